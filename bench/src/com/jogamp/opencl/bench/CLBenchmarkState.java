@@ -0,0 +1,100 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.bench;
+
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Context, queue and program shared by the benchmarks of one thread.
+ * Uses the max flops device of all platforms, the device type can be forced
+ * with the <code>jocl.bench.device</code> system property (e.g. CPU for pocl).
+ * @author Michael Bien
+ */
+@State(Scope.Thread)
+public class CLBenchmarkState {
+
+    static final String SOURCE =
+              "kernel void add(global float* a, global const float* b, const float c, const int n) {\n"
+            + "    int i = get_global_id(0);\n"
+            + "    if(i < n) a[i] = a[i] + b[i] * c;\n"
+            + "}\n";
+
+    public CLContext context;
+    public CLDevice device;
+    public CLCommandQueue queue;
+    public CLProgram program;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String type = System.getProperty("jocl.bench.device");
+        CLDevice.Type deviceType = type == null ? null : CLDevice.Type.valueOf(type.toUpperCase());
+
+        device = findMaxFlopsDevice(deviceType);
+        if(device == null) {
+            throw new IllegalStateException("no "+(type == null ? "" : type+" ")+"device found on any platform");
+        }
+        context = CLContext.create(device);
+        queue = device.createCommandQueue();
+        program = context.createProgram(SOURCE).build();
+    }
+
+    /**
+     * Returns the max flops device of the given type (or any type if null) of all platforms.
+     */
+    static CLDevice findMaxFlopsDevice(CLDevice.Type type) {
+        CLDevice best = null;
+        long bestFlops = -1;
+        for (CLPlatform platform : CLPlatform.listCLPlatforms()) {
+            CLDevice candidate = type == null ? platform.getMaxFlopsDevice() : platform.getMaxFlopsDevice(type);
+            if(candidate != null) {
+                long flops = (long)candidate.getMaxComputeUnits() * candidate.getMaxClockFrequency();
+                if(flops > bestFlops) {
+                    bestFlops = flops;
+                    best = candidate;
+                }
+            }
+        }
+        return best;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.release();
+    }
+
+}
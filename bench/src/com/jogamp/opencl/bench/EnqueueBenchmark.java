@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.bench;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLKernel;
+import java.nio.ByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Kernel launch and buffer transfer overhead. Non blocking commands are followed by a finish
+ * to measure the full round trip without letting the queue grow unbounded.
+ * @author Michael Bien
+ */
+@State(Scope.Thread)
+public class EnqueueBenchmark {
+
+    @Param({"64", "4096", "262144", "16777216"})
+    public int bytes;
+
+    private CLCommandQueue queue;
+    private CLKernel kernel;
+    private CLBuffer<ByteBuffer> buffer;
+
+    @Setup
+    public void setup(CLBenchmarkState state) {
+        queue = state.queue;
+        buffer = state.context.createByteBuffer(bytes, READ_WRITE);
+        kernel = state.program.createCLKernel("add").putArgs(buffer, buffer).putArg(1.0f).putArg(bytes/4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        queue.finish();
+        kernel.release();
+        buffer.release();
+    }
+
+    @Benchmark
+    public CLCommandQueue put1DRangeKernel() {
+        return queue.put1DRangeKernel(kernel, 0, bytes/4, 0).finish();
+    }
+
+    @Benchmark
+    public CLCommandQueue putWriteBufferBlocking() {
+        return queue.putWriteBuffer(buffer, true);
+    }
+
+    @Benchmark
+    public CLCommandQueue putWriteBuffer() {
+        return queue.putWriteBuffer(buffer, false).finish();
+    }
+
+    @Benchmark
+    public CLCommandQueue putReadBufferBlocking() {
+        return queue.putReadBuffer(buffer, true);
+    }
+
+    @Benchmark
+    public CLCommandQueue putReadBuffer() {
+        return queue.putReadBuffer(buffer, false).finish();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.bench;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLKernel;
+import java.nio.FloatBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Overhead of the {@link CLKernel#setArg} variants.
+ * @author Michael Bien
+ */
+@State(Scope.Thread)
+public class KernelArgBenchmark {
+
+    private CLKernel kernel;
+    private CLBuffer<FloatBuffer> buffer;
+    private int counter;
+
+    @Setup
+    public void setup(CLBenchmarkState state) {
+        kernel = state.program.createCLKernel("add");
+        buffer = state.context.createFloatBuffer(1024);
+    }
+
+    @Benchmark
+    public CLKernel setMemoryArg() {
+        return kernel.setArg(0, buffer);
+    }
+
+    @Benchmark
+    public CLKernel setFloatArg() {
+        return kernel.setArg(2, (float)counter++);
+    }
+
+    @Benchmark
+    public CLKernel setIntArg() {
+        return kernel.setArg(3, counter++);
+    }
+
+    @Benchmark
+    public CLKernel setArgs() {
+        return kernel.rewind().putArg(buffer).putArg(buffer).putArg(1.0f).putArg(counter++);
+    }
+
+    @Benchmark
+    public CLKernel setArgsBoxed() {
+        return kernel.setArgs(buffer, buffer, 1.0f, counter++);
+    }
+
+}
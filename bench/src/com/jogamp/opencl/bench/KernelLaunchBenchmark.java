@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.bench;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLKernelLauncher;
+import java.nio.FloatBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Compares per-argument {@link CLKernel#setArg} calls with packed arguments launched
+ * through a {@link CLKernelLauncher}. Each launch is followed by a finish.
+ * @author Michael Bien
+ */
+@State(Scope.Thread)
+public class KernelLaunchBenchmark {
+
+    private static final int ELEMENTS = 1024;
+
+    private CLCommandQueue queue;
+    private CLKernel kernel;
+    private CLKernelLauncher launcher;
+    private CLBuffer<FloatBuffer> a;
+    private CLBuffer<FloatBuffer> b;
+
+    @Setup
+    public void setup(CLBenchmarkState state) {
+        queue = state.queue;
+        a = state.context.createFloatBuffer(ELEMENTS, READ_WRITE);
+        b = state.context.createFloatBuffer(ELEMENTS, READ_ONLY);
+        kernel = state.program.createCLKernel("add");
+        launcher = kernel.createLauncher();
+    }
+
+    @TearDown
+    public void tearDown() {
+        queue.finish();
+        kernel.release();
+        a.release();
+        b.release();
+    }
+
+    @Benchmark
+    public CLCommandQueue setArgLaunch() {
+        kernel.setArg(0, a).setArg(1, b).setArg(2, 1.0f).setArg(3, ELEMENTS);
+        return queue.put1DRangeKernel(kernel, 0, ELEMENTS, 0).finish();
+    }
+
+    @Benchmark
+    public CLCommandQueue launcherLaunch() {
+        launcher.putArg(a).putArg(b).putArg(1.0f).putArg(ELEMENTS);
+        return queue.put1DRangeKernel(launcher, 0, ELEMENTS, 0).finish();
+    }
+
+}
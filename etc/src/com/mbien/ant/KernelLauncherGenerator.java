@@ -0,0 +1,193 @@
+package com.jogamp.ant;
+
+import com.jogamp.ant.KernelSignature.Param;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Build setup utility. Parses kernel signatures in OpenCL source files and generates
+ * one typed launcher class per kernel.
+ *
+ * kernel:
+ * kernel void add(global float* a, const float b, int n, local float* tmp)
+ *
+ * generated:
+ * AddLauncher.setArgs(CLMemory<?> a, float b, int n, int tmpBytes)
+ * AddLauncher.put1DRange(CLCommandQueue queue, long globalWorkSize, long localWorkSize, ...)
+ *
+ * Scalars and two, three and four component vectors are set via the primitive CLKernel.setArg
+ * methods which do not allocate, other vectors and structs are passed as java.nio.Buffer.
+ * See {@link KernelSignature} for the type mapping.
+ *
+ * @author Michael Bien
+ */
+public class KernelLauncherGenerator extends Task {
+
+    private final List<FileSet> filesets = new ArrayList<FileSet>();
+    private File destdir;
+    private String packageName;
+
+    @Override
+    public void execute() throws BuildException {
+
+        if(destdir == null)
+            throw new BuildException("destdir must be set");
+        if(packageName == null)
+            throw new BuildException("package must be set");
+
+        File dir = new File(destdir, packageName.replace('.', File.separatorChar));
+        if(!dir.exists() && !dir.mkdirs())
+            throw new BuildException("can not create "+dir);
+
+        try {
+            for (FileSet fileset : filesets) {
+                DirectoryScanner scanner = fileset.getDirectoryScanner(getProject());
+                for (String name : scanner.getIncludedFiles()) {
+                    generate(new File(scanner.getBasedir(), name), dir);
+                }
+            }
+        } catch (IOException ex) {
+            throw new BuildException(ex);
+        }
+    }
+
+    private void generate(File source, File dir) throws IOException {
+
+        for (KernelSignature signature : KernelSignature.parse(readSourceFile(source))) {
+            String kernel = signature.name;
+            if(signature.error != null) {
+                log("skipping kernel "+kernel+" in "+source+": "+signature.error, Project.MSG_WARN);
+                continue;
+            }
+            String className = className(kernel);
+            File file = new File(dir, className+".java");
+            if(file.exists() && file.lastModified() > source.lastModified()) {
+                continue;
+            }
+            log("generating "+className+" for kernel "+kernel+" in "+source.getName(), Project.MSG_VERBOSE);
+            write(file, source.getName(), kernel, className, signature.params);
+        }
+    }
+
+    private static String className(String kernel) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : kernel.split("_")) {
+            if(part.length() > 0) {
+                sb.append(part.substring(0, 1).toUpperCase(Locale.ENGLISH)).append(part.substring(1));
+            }
+        }
+        return sb.append("Launcher").toString();
+    }
+
+    private void write(File file, String source, String kernel, String className, List<Param> params) throws IOException {
+
+        StringBuilder declaration = new StringBuilder();
+        StringBuilder invocation = new StringBuilder();
+        for (Param param : params) {
+            declaration.append(", ").append(param.declaration());
+            invocation.append(", ").append(param.invocation());
+        }
+        String decl = declaration.length() > 0 ? declaration.substring(2) : "";
+        String inv  = invocation.length() > 0 ? invocation.substring(2) : "";
+
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        try{
+            out.write("/* generated by "+getClass().getSimpleName()+" from "+source+", do not edit */\n");
+            out.write("package "+packageName+";\n\n");
+            out.write("import com.jogamp.opencl.*;\n");
+            out.write("import java.nio.Buffer;\n\n");
+            out.write("/**\n * Typed launcher of the kernel <code>"+kernel+"</code>.\n */\n");
+            out.write("public final class "+className+" {\n\n");
+            out.write("    public static final String KERNEL_NAME = \""+kernel+"\";\n\n");
+            out.write("    private final CLKernel kernel;\n\n");
+            out.write("    public "+className+"(CLProgram program) {\n");
+            out.write("        this(program.createCLKernel(KERNEL_NAME));\n");
+            out.write("    }\n\n");
+            out.write("    public "+className+"(CLKernel kernel) {\n");
+            out.write("        if(!KERNEL_NAME.equals(kernel.name) || kernel.numArgs != "+params.size()+") {\n");
+            out.write("            throw new IllegalArgumentException(kernel+\" does not match the signature of \"+KERNEL_NAME);\n");
+            out.write("        }\n");
+            out.write("        this.kernel = kernel;\n");
+            out.write("    }\n\n");
+
+            out.write("    public "+className+" setArgs("+decl+") {\n");
+            for (int i = 0; i < params.size(); i++) {
+                Param param = params.get(i);
+                if(param.local) {
+                    out.write("        kernel.setArgSize("+i+", "+param.name+");\n");
+                }else if(param.components == 3) {
+                    // three component vectors have the size of four components in OpenCL
+                    out.write("        kernel.setArg("+i+", "+param.invocation()+", ("+param.type+")0);\n");
+                }else{
+                    out.write("        kernel.setArg("+i+", "+param.invocation()+");\n");
+                }
+            }
+            out.write("        return this;\n");
+            out.write("    }\n\n");
+
+            String sep = params.isEmpty() ? "" : ", ";
+            out.write("    public CLCommandQueue put1DRange(CLCommandQueue queue, long globalWorkSize, long localWorkSize"+sep+decl+") {\n");
+            out.write("        return put1DRange(queue, globalWorkSize, localWorkSize"+sep+inv+", null, null);\n");
+            out.write("    }\n\n");
+            out.write("    public CLCommandQueue put1DRange(CLCommandQueue queue, long globalWorkSize, long localWorkSize"+sep+decl+", CLEventList condition, CLEventList events) {\n");
+            out.write("        setArgs("+inv+");\n");
+            out.write("        return queue.put1DRangeKernel(kernel, 0, globalWorkSize, localWorkSize, condition, events);\n");
+            out.write("    }\n\n");
+            out.write("    public CLCommandQueue put2DRange(CLCommandQueue queue, long globalWorkSizeX, long globalWorkSizeY, long localWorkSizeX, long localWorkSizeY"+sep+decl+") {\n");
+            out.write("        return put2DRange(queue, globalWorkSizeX, globalWorkSizeY, localWorkSizeX, localWorkSizeY"+sep+inv+", null, null);\n");
+            out.write("    }\n\n");
+            out.write("    public CLCommandQueue put2DRange(CLCommandQueue queue, long globalWorkSizeX, long globalWorkSizeY, long localWorkSizeX, long localWorkSizeY"+sep+decl+", CLEventList condition, CLEventList events) {\n");
+            out.write("        setArgs("+inv+");\n");
+            out.write("        return queue.put2DRangeKernel(kernel, 0, 0, globalWorkSizeX, globalWorkSizeY, localWorkSizeX, localWorkSizeY, condition, events);\n");
+            out.write("    }\n\n");
+
+            out.write("    public CLKernel getKernel() {\n");
+            out.write("        return kernel;\n");
+            out.write("    }\n\n");
+            out.write("}\n");
+        }finally{
+            out.close();
+        }
+    }
+
+    private final StringBuilder readSourceFile(File file) throws IOException {
+
+        char[] buffer = new char[(int)file.length()];
+        FileReader reader = new FileReader(file);
+        int length;
+        try{
+            length = reader.read(buffer);
+        }finally{
+            reader.close();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(buffer, 0, Math.max(length, 0));
+
+        return sb;
+    }
+
+    public void addFileset(FileSet fileset) {
+        filesets.add(fileset);
+    }
+
+    public void setDestdir(File destdir) {
+        this.destdir = destdir;
+    }
+
+    public void setPackage(String packageName) {
+        this.packageName = packageName;
+    }
+
+}
@@ -0,0 +1,292 @@
+package com.jogamp.ant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static java.util.regex.Pattern.*;
+
+/**
+ * Kernel signature parsed from OpenCL source, used by {@link KernelLauncherGenerator}.
+ * Independent of ant to be testable without the ant runtime.
+ *
+ * Scalar mapping:
+ * char, uchar -> byte, short, ushort -> short, int, uint -> int, long, ulong -> long,
+ * float -> float, double -> double. The unsigned keyword is folded into the u-prefixed type.
+ * Pointers to global or constant memory and images map to CLMemory<?>, pointers to local memory
+ * to the int size in bytes. Two, three and four component vectors of short, int, long, float and double
+ * map to one Java parameter per component, e.g. float4 b to float bX, float bY, float bZ, float bW.
+ * Other vectors and structs passed by value map to java.nio.Buffer.
+ * Kernels with bool, half, size_t, ptrdiff_t, intptr_t or uintptr_t arguments are not supported.
+ * sampler_t is a legal kernel argument but rejected too since CLKernel has no setter for samplers.
+ *
+ * @author Michael Bien
+ */
+public final class KernelSignature {
+
+    final static Pattern KERNEL_PATTERN
+            = compile("(?:__)?kernel \\s+ void \\s+ (\\w+) \\s* \\( ([^)]*) \\)", COMMENTS|DOTALL);
+
+    final static Pattern COMMENT_PATTERN
+            = compile("/\\*.*?\\*/|//[^\\n]*", DOTALL);
+
+    final static Pattern ATTRIBUTE_PATTERN
+            = compile("\\b__attribute__\\s*\\(");
+
+    final static Pattern VECTOR_PATTERN
+            = compile("(u?short|u?int|u?long|float|double)([234])");
+
+    final static Pattern QUALIFIER_PATTERN
+            = compile("\\b(?:__)?(?:const|restrict|volatile|read_only|write_only|read_write)\\b");
+
+    private final static List<String> ADDRESS_SPACES
+            = Arrays.asList("global", "local", "constant", "private");
+
+    private final static List<String> ILLEGAL_TYPES
+            = Arrays.asList("bool", "half", "size_t", "ptrdiff_t", "intptr_t", "uintptr_t");
+
+    /**
+     * Name of the kernel function.
+     */
+    public final String name;
+
+    /**
+     * Launcher parameters in argument order, null if the kernel is not supported.
+     */
+    public final List<Param> params;
+
+    /**
+     * Reason why the kernel is not supported or null.
+     */
+    public final String error;
+
+    private KernelSignature(String name, List<Param> params, String error) {
+        this.name = name;
+        this.params = params;
+        this.error = error;
+    }
+
+    /**
+     * Returns the signatures of all kernels of the OpenCL source in declaration order.
+     */
+    public static List<KernelSignature> parse(CharSequence source) {
+
+        String src = stripAttributes(COMMENT_PATTERN.matcher(source).replaceAll(" "));
+        Matcher matcher = KERNEL_PATTERN.matcher(src);
+
+        List<KernelSignature> kernels = new ArrayList<KernelSignature>();
+        while (matcher.find()) {
+            String kernel = matcher.group(1);
+            try {
+                kernels.add(new KernelSignature(kernel, parseParams(matcher.group(2)), null));
+            } catch (IllegalArgumentException ex) {
+                kernels.add(new KernelSignature(kernel, null, ex.getMessage()));
+            }
+        }
+        return kernels;
+    }
+
+    /**
+     * Removes all __attribute__((...)) specifiers, the arguments may contain nested parentheses.
+     */
+    static String stripAttributes(String src) {
+        StringBuilder sb = new StringBuilder(src.length());
+        Matcher matcher = ATTRIBUTE_PATTERN.matcher(src);
+        int pos = 0;
+        while (matcher.find(pos)) {
+            sb.append(src, pos, matcher.start()).append(' ');
+            int depth = 1;
+            int i = matcher.end();
+            while (i < src.length() && depth > 0) {
+                char c = src.charAt(i++);
+                if(c == '(') {
+                    depth++;
+                }else if(c == ')') {
+                    depth--;
+                }
+            }
+            pos = i;
+        }
+        return sb.append(src, pos, src.length()).toString();
+    }
+
+    private static List<Param> parseParams(String signature) {
+
+        if(signature.trim().length() == 0 || signature.trim().equals("void")) {
+            return Collections.emptyList();
+        }
+
+        List<Param> params = new ArrayList<Param>();
+        for (String token : signature.split(",")) {
+
+            String param = QUALIFIER_PATTERN.matcher(token).replaceAll(" ");
+            boolean pointer = param.indexOf('*') >= 0;
+            param = param.replace('*', ' ').trim();
+
+            List<String> words = new ArrayList<String>(Arrays.asList(param.split("\\s+")));
+            if(words.size() < 2)
+                throw new IllegalArgumentException("can not parse parameter '"+token.trim()+"'");
+
+            String name = words.remove(words.size()-1);
+
+            String space = "private";
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i).startsWith("__") ? words.get(i).substring(2) : words.get(i);
+                if(ADDRESS_SPACES.contains(word)) {
+                    space = word;
+                    words.remove(i--);
+                }else if(word.equals("struct") || word.equals("union") || word.equals("enum")) {
+                    words.remove(i--);
+                }
+            }
+            String type = scalarType(words, token);
+
+            if(pointer) {
+                if(space.equals("local")) {
+                    params.add(new Param(name+"Bytes", "int", true));
+                }else{
+                    params.add(new Param(name, "CLMemory<?>", false));
+                }
+            }else if(type.startsWith("image")) {
+                params.add(new Param(name, "CLMemory<?>", false));
+            }else if(ILLEGAL_TYPES.contains(type)) {
+                throw new IllegalArgumentException("unsupported parameter type "+type);
+            }else if(type.equals("sampler_t")) {
+                throw new IllegalArgumentException("unsupported parameter type "+type+", CLKernel has no sampler setter");
+            }else{
+                Matcher vector = VECTOR_PATTERN.matcher(type);
+                if(vector.matches()) {
+                    params.add(new Param(name, javaType(vector.group(1)), Integer.parseInt(vector.group(2))));
+                }else{
+                    params.add(new Param(name, javaType(type), false));
+                }
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Folds signed and unsigned into the OpenCL type name, e.g. 'unsigned char' to uchar.
+     */
+    private static String scalarType(List<String> words, String token) {
+        if(words.isEmpty()) {
+            throw new IllegalArgumentException("can not parse parameter '"+token.trim()+"'");
+        }
+        String first = words.get(0);
+        if(first.equals("unsigned") || first.equals("signed")) {
+            if(words.size() > 2) {
+                throw new IllegalArgumentException("can not parse parameter '"+token.trim()+"'");
+            }
+            String type = words.size() == 2 ? words.get(1) : "int";
+            if(!type.equals("char") && !type.equals("short") && !type.equals("int") && !type.equals("long")) {
+                throw new IllegalArgumentException("can not parse parameter '"+token.trim()+"'");
+            }
+            return first.equals("unsigned") ? "u"+type : type;
+        }
+        if(words.size() > 1) {
+            throw new IllegalArgumentException("can not parse parameter '"+token.trim()+"'");
+        }
+        return first;
+    }
+
+    private static String javaType(String type) {
+        if(type.equals("char") || type.equals("uchar")) {
+            return "byte";
+        }else if(type.equals("short") || type.equals("ushort")) {
+            return "short";
+        }else if(type.equals("int") || type.equals("uint")) {
+            return "int";
+        }else if(type.equals("long") || type.equals("ulong")) {
+            return "long";
+        }else if(type.equals("float") || type.equals("double")) {
+            return type;
+        }else{
+            // vectors, structs...
+            return "Buffer";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name+(error != null ? " ["+error+"]" : params.toString());
+    }
+
+    /**
+     * Parameter of a generated launcher method.
+     */
+    public static final class Param {
+
+        private final static String COMPONENTS = "XYZW";
+
+        /**
+         * Java parameter name, the prefix of the component names for vectors.
+         */
+        public final String name;
+
+        /**
+         * Java parameter type, the component type for vectors.
+         */
+        public final String type;
+
+        /**
+         * True if the parameter is the size of a local memory buffer.
+         */
+        public final boolean local;
+
+        /**
+         * Number of vector components, one Java parameter each. 1 for all non vector parameters.
+         */
+        public final int components;
+
+        Param(String name, String type, boolean local) {
+            this.name = name;
+            this.type = type;
+            this.local = local;
+            this.components = 1;
+        }
+
+        Param(String name, String type, int components) {
+            this.name = name;
+            this.type = type;
+            this.local = false;
+            this.components = components;
+        }
+
+        /**
+         * Returns the Java parameter name of the given vector component.
+         */
+        public String component(int index) {
+            return components == 1 ? name : name+COMPONENTS.charAt(index);
+        }
+
+        /**
+         * Returns the Java parameter declaration, comma separated for vectors.
+         */
+        public String declaration() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < components; i++) {
+                sb.append(i == 0 ? "" : ", ").append(type).append(' ').append(component(i));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Returns the Java parameter names, comma separated for vectors.
+         */
+        public String invocation() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < components; i++) {
+                sb.append(i == 0 ? "" : ", ").append(component(i));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return declaration();
+        }
+    }
+
+}
@@ -99,6 +99,19 @@ CL_CALLBACK void eventCallback(cl_event event, cl_int status, void * object) {
     (*jvm)->DetachCurrentThread(jvm);
 }
 
+CL_CALLBACK void sharedEventCallback(cl_event event, cl_int status, void * object) {
+
+    JNIEnv *env;
+    jobject obj = (jobject)object;
+
+    (*jvm)->AttachCurrentThread(jvm, (void **)&env, NULL);
+
+        // the reference is shared by many events and deleted explicitly
+        (*env)->CallVoidMethod(env, obj, eventCB_mid, event, status);
+
+    (*jvm)->DetachCurrentThread(jvm);
+}
+
 CL_CALLBACK void memObjDestructorCallback(cl_mem mem, void * object) {
 
     JNIEnv *env;
@@ -395,6 +408,28 @@ Java_com_jogamp_opencl_llb_impl_CLImpl_clSetEventCallback0(JNIEnv *env, jobject
     return _res;
 }
 
+JNIEXPORT jlong JNICALL
+Java_com_jogamp_opencl_llb_impl_CLImpl_clNewEventCallbackRef0(JNIEnv *env, jobject _unused, jobject listener) {
+    return (jlong) (intptr_t) (*env)->NewGlobalRef(env, listener);
+}
+
+JNIEXPORT jint JNICALL
+Java_com_jogamp_opencl_llb_impl_CLImpl_clSetEventCallbackRef0(JNIEnv *env, jobject _unused,
+        jlong event, jint trigger, jlong callbackRef, jlong procAddress) {
+
+    cl_event _event = (cl_event) (intptr_t) event;
+    cl_int _trigger = trigger;
+    typedef int32_t (*function)(cl_event, cl_int, void (*pfn_event_notify) (cl_event, cl_int, void *), void *);
+    function clSetEventCallback = (function)(intptr_t) procAddress;
+
+    return (*clSetEventCallback)(_event, _trigger, &sharedEventCallback, (void *) (intptr_t) callbackRef);
+}
+
+JNIEXPORT void JNICALL
+Java_com_jogamp_opencl_llb_impl_CLImpl_clDeleteEventCallbackRef0(JNIEnv *env, jobject _unused, jlong callbackRef) {
+    (*env)->DeleteGlobalRef(env, (jobject) (intptr_t) callbackRef);
+}
+
 JNIEXPORT jint JNICALL
 Java_com_jogamp_opencl_llb_impl_CLImpl_clSetMemObjectDestructorCallback0(JNIEnv *env, jobject _unused,
         jlong mem, jobject listener, jlong procAddress) {
@@ -442,3 +477,234 @@ Java_com_jogamp_opencl_llb_impl_CLImpl_dispatch_1clGetExtensionFunctionAddress1_
 
     return (jlong)_res;
 }
+
+// command list opcodes, see com.jogamp.opencl.CLCommandList
+#define CMD_WRITE_BUFFER 1
+#define CMD_READ_BUFFER  2
+#define CMD_COPY_BUFFER  3
+#define CMD_SET_ARG      4
+#define CMD_SET_MEM_ARG  5
+#define CMD_ND_RANGE     6
+#define CMD_BARRIER      7
+
+JNIEXPORT jint JNICALL
+Java_com_jogamp_opencl_llb_impl_CLImpl_clEnqueueCommandList0(JNIEnv *env, jobject _unused,
+        jlong command_queue, jobject commands, jint commands_byte_offset, jint length, jint last_enqueue,
+        jobjectArray host_buffers, jint num_events_in_wait_list, jobject event_wait_list, jint event_wait_list_byte_offset,
+        jobject event, jint event_byte_offset, jobject failed_command, jint failed_command_byte_offset,
+        jlong writeAddress, jlong readAddress, jlong copyAddress, jlong argAddress, jlong rangeAddress, jlong barrierAddress) {
+
+    typedef int32_t (*rwFunctionType)(cl_command_queue, cl_mem, uint32_t, size_t, size_t, const void *, uint32_t, cl_event *, cl_event *);
+    typedef int32_t (*copyFunctionType)(cl_command_queue, cl_mem, cl_mem, size_t, size_t, size_t, uint32_t, cl_event *, cl_event *);
+    typedef int32_t (*argFunctionType)(cl_kernel, uint32_t, size_t, const void *);
+    typedef int32_t (*rangeFunctionType)(cl_command_queue, cl_kernel, uint32_t, const size_t *, const size_t *, const size_t *, uint32_t, cl_event *, cl_event *);
+    typedef int32_t (*barrierFunctionType)(cl_command_queue);
+
+    rwFunctionType clEnqueueWriteBuffer      = (rwFunctionType)(intptr_t) writeAddress;
+    rwFunctionType clEnqueueReadBuffer       = (rwFunctionType)(intptr_t) readAddress;
+    copyFunctionType clEnqueueCopyBuffer     = (copyFunctionType)(intptr_t) copyAddress;
+    argFunctionType clSetKernelArg           = (argFunctionType)(intptr_t) argAddress;
+    rangeFunctionType clEnqueueNDRangeKernel = (rangeFunctionType)(intptr_t) rangeAddress;
+    barrierFunctionType clEnqueueBarrier     = (barrierFunctionType)(intptr_t) barrierAddress;
+
+    cl_command_queue queue = (cl_command_queue)(intptr_t) command_queue;
+    jlong * words = (jlong *) (((char*) (*env)->GetDirectBufferAddress(env, commands)) + commands_byte_offset);
+    cl_event * _event_wait_list_ptr = NULL;
+    cl_event * _event_ptr = NULL;
+    int32_t * _failed_ptr = NULL;
+
+    // the wait list applies to the first enqueued command only
+    uint32_t waitCount = (uint32_t) num_events_in_wait_list;
+    cl_event * waitList;
+    cl_event * eventPtr;
+
+    size_t offset[3];
+    size_t global[3];
+    size_t local[3];
+    jobject host;
+    void * hostPtr;
+    cl_mem mem;
+    cl_int status = CL_SUCCESS;
+    jint pos = 0;
+    jint start = 0;
+
+    if (event_wait_list != NULL) {
+        _event_wait_list_ptr = (cl_event *) (((char*) (*env)->GetDirectBufferAddress(env, event_wait_list)) + event_wait_list_byte_offset);
+    }
+    if (event != NULL) {
+        _event_ptr = (cl_event *) (((char*) (*env)->GetDirectBufferAddress(env, event)) + event_byte_offset);
+    }
+    if (failed_command != NULL) {
+        _failed_ptr = (int32_t *) (((char*) (*env)->GetDirectBufferAddress(env, failed_command)) + failed_command_byte_offset);
+    }
+    waitList = _event_wait_list_ptr;
+
+    while (pos < length && status == CL_SUCCESS) {
+
+        start = pos;
+        eventPtr = (start == last_enqueue) ? _event_ptr : NULL;
+
+        switch ((int) words[pos++]) {
+            case CMD_WRITE_BUFFER:
+            case CMD_READ_BUFFER:
+                host = (*env)->GetObjectArrayElement(env, host_buffers, (jsize) words[pos+4]);
+                hostPtr = host == NULL ? NULL : (void *) (((char*) (*env)->GetDirectBufferAddress(env, host)) + words[pos+5]);
+                (*env)->DeleteLocalRef(env, host);
+                if (words[start] == CMD_WRITE_BUFFER) {
+                    status = (*clEnqueueWriteBuffer)(queue, (cl_mem)(intptr_t) words[pos], (uint32_t) words[pos+1],
+                                (size_t) words[pos+2], (size_t) words[pos+3], hostPtr, waitCount, waitList, eventPtr);
+                } else {
+                    status = (*clEnqueueReadBuffer)(queue, (cl_mem)(intptr_t) words[pos], (uint32_t) words[pos+1],
+                                (size_t) words[pos+2], (size_t) words[pos+3], hostPtr, waitCount, waitList, eventPtr);
+                }
+                waitCount = 0; waitList = NULL;
+                pos += 6;
+                break;
+            case CMD_COPY_BUFFER:
+                status = (*clEnqueueCopyBuffer)(queue, (cl_mem)(intptr_t) words[pos], (cl_mem)(intptr_t) words[pos+1],
+                                (size_t) words[pos+2], (size_t) words[pos+3], (size_t) words[pos+4], waitCount, waitList, eventPtr);
+                waitCount = 0; waitList = NULL;
+                pos += 5;
+                break;
+            case CMD_SET_ARG:
+                // value is stored inline in the first bytes of the following word
+                status = (*clSetKernelArg)((cl_kernel)(intptr_t) words[pos], (uint32_t) words[pos+1],
+                                (size_t) words[pos+2], (const void *) &words[pos+3]);
+                pos += 4;
+                break;
+            case CMD_SET_MEM_ARG:
+                mem = (cl_mem)(intptr_t) words[pos+2];
+                status = (*clSetKernelArg)((cl_kernel)(intptr_t) words[pos], (uint32_t) words[pos+1], sizeof(cl_mem), &mem);
+                pos += 3;
+                break;
+            case CMD_ND_RANGE:
+                offset[0] = (size_t) words[pos+2]; offset[1] = (size_t) words[pos+3]; offset[2] = (size_t) words[pos+4];
+                global[0] = (size_t) words[pos+5]; global[1] = (size_t) words[pos+6]; global[2] = (size_t) words[pos+7];
+                local[0]  = (size_t) words[pos+8]; local[1]  = (size_t) words[pos+9]; local[2]  = (size_t) words[pos+10];
+                status = (*clEnqueueNDRangeKernel)(queue, (cl_kernel)(intptr_t) words[pos], (uint32_t) words[pos+1],
+                                offset, global, local[0] == 0 ? NULL : local, waitCount, waitList, eventPtr);
+                waitCount = 0; waitList = NULL;
+                pos += 11;
+                break;
+            case CMD_BARRIER:
+                status = (*clEnqueueBarrier)(queue);
+                break;
+            default:
+                status = CL_INVALID_VALUE;
+                break;
+        }
+    }
+
+    if (status != CL_SUCCESS && _failed_ptr != NULL) {
+        *_failed_ptr = start;
+    }
+
+    return status;
+}
+
+// packed kernel argument, see com.jogamp.opencl.CLKernelLauncher
+typedef struct {
+    int32_t index;
+    int32_t size;
+    int32_t local;
+    int32_t padding;
+    jlong   value;
+} packed_arg;
+
+JNIEXPORT jint JNICALL
+Java_com_jogamp_opencl_llb_impl_CLImpl_clEnqueueNDRangeKernelWithArgs0(JNIEnv *env, jobject _unused,
+        jlong command_queue, jlong kernel, jint num_args, jobject args, jint args_byte_offset, jint work_dim,
+        jobject global_work_offset, jint global_work_offset_byte_offset, jobject global_work_size, jint global_work_size_byte_offset,
+        jobject local_work_size, jint local_work_size_byte_offset, jint num_events_in_wait_list, jobject event_wait_list, jint event_wait_list_byte_offset,
+        jobject event, jint event_byte_offset, jobject failed_arg, jint failed_arg_byte_offset, jlong argAddress, jlong rangeAddress) {
+
+    typedef int32_t (*argFunctionType)(cl_kernel, uint32_t, size_t, const void *);
+    typedef int32_t (*rangeFunctionType)(cl_command_queue, cl_kernel, uint32_t, const size_t *, const size_t *, const size_t *, uint32_t, cl_event *, cl_event *);
+
+    argFunctionType clSetKernelArg           = (argFunctionType)(intptr_t) argAddress;
+    rangeFunctionType clEnqueueNDRangeKernel = (rangeFunctionType)(intptr_t) rangeAddress;
+
+    cl_kernel _kernel = (cl_kernel)(intptr_t) kernel;
+    packed_arg * _args_ptr = (packed_arg *) (((char*) (*env)->GetDirectBufferAddress(env, args)) + args_byte_offset);
+    size_t * _gwo_ptr = NULL;
+    size_t * _gws_ptr = NULL;
+    size_t * _lws_ptr = NULL;
+    cl_event * _event_wait_list_ptr = NULL;
+    cl_event * _event_ptr = NULL;
+    int32_t * _failed_ptr = NULL;
+    cl_int status = CL_SUCCESS;
+    jint i;
+
+    if (global_work_offset != NULL) {
+        _gwo_ptr = (size_t *) (((char*) (*env)->GetDirectBufferAddress(env, global_work_offset)) + global_work_offset_byte_offset);
+    }
+    if (global_work_size != NULL) {
+        _gws_ptr = (size_t *) (((char*) (*env)->GetDirectBufferAddress(env, global_work_size)) + global_work_size_byte_offset);
+    }
+    if (local_work_size != NULL) {
+        _lws_ptr = (size_t *) (((char*) (*env)->GetDirectBufferAddress(env, local_work_size)) + local_work_size_byte_offset);
+    }
+    if (event_wait_list != NULL) {
+        _event_wait_list_ptr = (cl_event *) (((char*) (*env)->GetDirectBufferAddress(env, event_wait_list)) + event_wait_list_byte_offset);
+    }
+    if (event != NULL) {
+        _event_ptr = (cl_event *) (((char*) (*env)->GetDirectBufferAddress(env, event)) + event_byte_offset);
+    }
+    if (failed_arg != NULL) {
+        _failed_ptr = (int32_t *) (((char*) (*env)->GetDirectBufferAddress(env, failed_arg)) + failed_arg_byte_offset);
+        *_failed_ptr = -1;
+    }
+
+    for (i = 0; i < num_args; i++) {
+        packed_arg * arg = &_args_ptr[i];
+        status = (*clSetKernelArg)(_kernel, (uint32_t) arg->index, (size_t) arg->size, arg->local ? NULL : (const void *) &arg->value);
+        if (status != CL_SUCCESS) {
+            if (_failed_ptr != NULL) {
+                *_failed_ptr = i;
+            }
+            return status;
+        }
+    }
+
+    return (*clEnqueueNDRangeKernel)((cl_command_queue)(intptr_t) command_queue, _kernel, (uint32_t) work_dim,
+                _gwo_ptr, _gws_ptr, _lws_ptr, (uint32_t) num_events_in_wait_list, _event_wait_list_ptr, _event_ptr);
+}
+
+JNIEXPORT jint JNICALL
+Java_com_jogamp_opencl_llb_impl_CLImpl_clGetEventProfilingTimestamps0(JNIEnv *env, jobject _unused,
+        jlong event, jobject timestamps, jint timestamps_byte_offset, jlong infoAddress, jlong profilingAddress) {
+
+    typedef int32_t (*infoFunctionType)(cl_event, uint32_t, size_t, void *, size_t *);
+
+    infoFunctionType clGetEventInfo          = (infoFunctionType)(intptr_t) infoAddress;
+    infoFunctionType clGetEventProfilingInfo = (infoFunctionType)(intptr_t) profilingAddress;
+
+    cl_event _event = (cl_event)(intptr_t) event;
+    jlong * _timestamps_ptr = (jlong *) (((char*) (*env)->GetDirectBufferAddress(env, timestamps)) + timestamps_byte_offset);
+    cl_int execStatus;
+    cl_ulong time;
+    cl_int status;
+    const cl_profiling_info commands[4] = {CL_PROFILING_COMMAND_QUEUED, CL_PROFILING_COMMAND_SUBMIT,
+                                           CL_PROFILING_COMMAND_START,  CL_PROFILING_COMMAND_END};
+    int i;
+
+    status = (*clGetEventInfo)(_event, CL_EVENT_COMMAND_EXECUTION_STATUS, sizeof(cl_int), &execStatus, NULL);
+    if (status != CL_SUCCESS) {
+        return status;
+    }
+    _timestamps_ptr[0] = execStatus;
+
+    if (execStatus != CL_COMPLETE) {
+        return CL_SUCCESS;
+    }
+
+    for (i = 0; i < 4; i++) {
+        status = (*clGetEventProfilingInfo)(_event, commands[i], sizeof(cl_ulong), &time, NULL);
+        if (status != CL_SUCCESS) {
+            return status;
+        }
+        _timestamps_ptr[i+1] = (jlong) time;
+    }
+
+    return status;
+}
@@ -35,6 +35,12 @@ import com.jogamp.opencl.CLMemory.Mem;
 import com.jogamp.opencl.llb.CL;
 import com.jogamp.opencl.llb.CLBufferBinding;
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 
@@ -48,6 +54,8 @@ public class CLBuffer<B extends Buffer> extends CLMemory<B> {
 
     private List<CLSubBuffer<B>> childs;
 
+    private CLDirtyRanges dirtyRanges;
+
     protected CLBuffer(CLContext context, long size, long id, int flags) {
         this(context, null, size, id, flags);
     }
@@ -159,9 +167,158 @@ public class CLBuffer<B extends Buffer> extends CLMemory<B> {
         return false;
     }
     
+    /**
+     * Enables tracking of host side modifications. Modified regions are marked using {@link #markDirty(int, int)}
+     * or by writing through the {@link #getTrackedView() tracked view} and can be uploaded with
+     * {@link CLCommandQueue#putSyncBuffer(CLBuffer, boolean)}.
+     * @param mergeDistance dirty ranges which are closer than this number of bytes are uploaded as one range.
+     */
+    public CLBuffer<B> enableDirtyTracking(int mergeDistance) {
+        if(buffer == null) {
+            throw new IllegalStateException("dirty tracking requires a host buffer");
+        }
+        dirtyRanges = new CLDirtyRanges(mergeDistance);
+        return this;
+    }
+
+    /**
+     * Returns true if dirty tracking has been enabled.
+     * @see #enableDirtyTracking(int)
+     */
+    public boolean isDirtyTrackingEnabled() {
+        return dirtyRanges != null;
+    }
+
+    /**
+     * Marks <code>length</code> elements starting at <code>index</code> of the host buffer as modified.
+     */
+    public CLBuffer<B> markDirty(int index, int length) {
+        checkTracking();
+        if(index < 0 || length < 0 || index+length > buffer.capacity()) {
+            throw new IndexOutOfBoundsException("range ["+index+", "+(index+length)+") exceeds buffer capacity "+buffer.capacity());
+        }
+        dirtyRanges.add((long)index*elementSize, (long)length*elementSize);
+        return this;
+    }
+
+    /**
+     * Returns true if the host buffer has been modified since the last sync.
+     */
+    public boolean isDirty() {
+        return dirtyRanges != null && dirtyRanges.size() > 0;
+    }
+
+    /**
+     * Returns the number of coalesced dirty ranges which would be uploaded on sync.
+     */
+    public int getDirtyRangeCount() {
+        return dirtyRanges == null ? 0 : dirtyRanges.size();
+    }
+
+    /**
+     * Returns a view of the host buffer which marks all written regions as dirty.
+     * @see #enableDirtyTracking(int)
+     */
+    public TrackedView getTrackedView() {
+        checkTracking();
+        return new TrackedView();
+    }
+
+    CLDirtyRanges getDirtyRanges() {
+        return dirtyRanges;
+    }
+
+    private void checkTracking() {
+        if(dirtyRanges == null) {
+            throw new IllegalStateException("dirty tracking is not enabled for "+this);
+        }
+    }
+
     @Override
     public <T extends Buffer> CLBuffer<T> cloneWith(T directBuffer) {
         return new CLBuffer<T>(context, directBuffer, size, ID, FLAGS);
     }
 
+    /**
+     * Writes to the host buffer and marks the written regions as dirty.
+     * Indices are element indices of the host buffer, or byte indices if the host buffer is a ByteBuffer.
+     */
+    public final class TrackedView {
+
+        private TrackedView() { }
+
+        public TrackedView putByte(int index, byte value) {
+            ((ByteBuffer)buffer).put(index, value);
+            dirtyRanges.add(index, 1);
+            return this;
+        }
+
+        public TrackedView putShort(int index, short value) {
+            if(buffer instanceof ByteBuffer) {
+                ((ByteBuffer)buffer).putShort(index, value);
+                dirtyRanges.add(index, 2);
+            }else{
+                ((ShortBuffer)buffer).put(index, value);
+                dirtyRanges.add(index*2L, 2);
+            }
+            return this;
+        }
+
+        public TrackedView putInt(int index, int value) {
+            if(buffer instanceof ByteBuffer) {
+                ((ByteBuffer)buffer).putInt(index, value);
+                dirtyRanges.add(index, 4);
+            }else{
+                ((IntBuffer)buffer).put(index, value);
+                dirtyRanges.add(index*4L, 4);
+            }
+            return this;
+        }
+
+        public TrackedView putLong(int index, long value) {
+            if(buffer instanceof ByteBuffer) {
+                ((ByteBuffer)buffer).putLong(index, value);
+                dirtyRanges.add(index, 8);
+            }else{
+                ((LongBuffer)buffer).put(index, value);
+                dirtyRanges.add(index*8L, 8);
+            }
+            return this;
+        }
+
+        public TrackedView putFloat(int index, float value) {
+            if(buffer instanceof ByteBuffer) {
+                ((ByteBuffer)buffer).putFloat(index, value);
+                dirtyRanges.add(index, 4);
+            }else{
+                ((FloatBuffer)buffer).put(index, value);
+                dirtyRanges.add(index*4L, 4);
+            }
+            return this;
+        }
+
+        public TrackedView putDouble(int index, double value) {
+            if(buffer instanceof ByteBuffer) {
+                ((ByteBuffer)buffer).putDouble(index, value);
+                dirtyRanges.add(index, 8);
+            }else{
+                ((DoubleBuffer)buffer).put(index, value);
+                dirtyRanges.add(index*8L, 8);
+            }
+            return this;
+        }
+
+        /**
+         * Marks <code>length</code> elements starting at <code>index</code> as modified.
+         */
+        public TrackedView markDirty(int index, int length) {
+            CLBuffer.this.markDirty(index, length);
+            return this;
+        }
+
+        public CLBuffer<B> getCLBuffer() {
+            return CLBuffer.this;
+        }
+    }
+
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.jogamp.opencl.CLException.*;
+
+/**
+ * Future of an asynchronously enqueued command. The future completes when the command's
+ * event reaches {@link CLEvent.ExecutionStatus#COMPLETE} or an error state, without parking a
+ * thread in {@native clWaitForEvents}.
+ * <p>
+ * The underlying event is owned by the future and released after completion.
+ * Commands can not be cancelled once enqueued.
+ * </p>
+ * @see CLCommandQueue#putReadBufferAsync(CLBuffer)
+ * @author Michael Bien
+ */
+public class CLCommandFuture<R> implements Future<R> {
+
+    private final CLCommandQueue queue;
+    private final CLEventList events;
+    private final R result;
+    private final CountDownLatch latch;
+
+    private final List<Runnable> listeners;
+    private volatile int status;
+    private volatile boolean done;
+
+    CLCommandFuture(CLCommandQueue queue, CLEventList events, R result) {
+        this.queue = queue;
+        this.events = events;
+        this.result = result;
+        this.latch = new CountDownLatch(1);
+        this.listeners = new ArrayList<Runnable>(2);
+        this.status = CLEvent.ExecutionStatus.QUEUED.STATUS;
+    }
+
+    /**
+     * Registers the completion callback on the command's event. The event is released if the registration fails.
+     */
+    CLCommandFuture<R> register() {
+        try{
+            events.getEvent(0).registerCallback(new CLEventListener() {
+                @Override public void eventStateChanged(CLEvent event, int status) {
+                    complete(status);
+                }
+            });
+        }catch(RuntimeException ex) {
+            events.release();
+            throw ex;
+        }
+        return this;
+    }
+
+    private void complete(int status) {
+        List<Runnable> pending;
+        synchronized(listeners) {
+            this.status = status;
+            this.done = true;
+            pending = new ArrayList<Runnable>(listeners);
+            listeners.clear();
+        }
+        events.release();
+        latch.countDown();
+        for (Runnable listener : pending) {
+            // a failing listener must not skip the others or escape into the driver's callback thread
+            try{
+                listener.run();
+            }catch(RuntimeException ex) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener which is notified on the thread which completed the command.
+     * Listeners should be short, since OpenCL implementations may deliver callbacks on
+     * internal driver threads. Exceptions thrown by listeners are passed to the uncaught exception handler
+     * of the completing thread. Listeners added after completion are notified immediately.
+     */
+    public CLCommandFuture<R> addListener(CLCommandListener<R> listener) {
+        return addListener(listener, null);
+    }
+
+    /**
+     * Adds a listener which is notified using the given executor after completion.
+     */
+    public CLCommandFuture<R> addListener(final CLCommandListener<R> listener, final Executor executor) {
+        Runnable notification = new Runnable() {
+            @Override public void run() {
+                if(executor == null) {
+                    listener.commandCompleted(CLCommandFuture.this);
+                }else{
+                    executor.execute(new Runnable() {
+                        @Override public void run() {
+                            listener.commandCompleted(CLCommandFuture.this);
+                        }
+                    });
+                }
+            }
+        };
+        synchronized(listeners) {
+            if(!done) {
+                listeners.add(notification);
+                return this;
+            }
+        }
+        notification.run();
+        return this;
+    }
+
+    /**
+     * Commands can not be cancelled, always returns false.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns true if the command completed with an error.
+     */
+    public boolean isFailed() {
+        return done && status < 0;
+    }
+
+    /**
+     * Returns the execution status code the command terminated with.
+     */
+    public int getStatusCode() {
+        return status;
+    }
+
+    /**
+     * Flushes the queue and waits for the command to complete.
+     */
+    @Override
+    public R get() throws InterruptedException, ExecutionException {
+        if(!done) {
+            queue.flush();
+            latch.await();
+        }
+        return getResult();
+    }
+
+    /**
+     * Flushes the queue and waits at most the given time for the command to complete.
+     */
+    @Override
+    public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if(!done) {
+            queue.flush();
+            if(!latch.await(timeout, unit)) {
+                throw new TimeoutException("command did not complete within "+timeout+" "+unit);
+            }
+        }
+        return getResult();
+    }
+
+    private R getResult() throws ExecutionException {
+        if(status < 0) {
+            throw new ExecutionException(newException(status, "command failed on "+queue));
+        }
+        return result;
+    }
+
+    public CLCommandQueue getQueue() {
+        return queue;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [done: "+done+" status: "+status+" result: "+result+"]";
+    }
+
+}
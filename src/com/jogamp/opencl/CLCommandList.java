@@ -0,0 +1,608 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.common.nio.Buffers;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Pre-recorded sequence of commands which can be replayed on any {@link CLCommandQueue}
+ * of the same context with a single native call.
+ * <p>
+ * Commands are recorded once into a native command stream. Buffers, kernel arguments and
+ * work sizes can be recorded as {@link Slot}s which may be rebound between replays without
+ * recording the list again. Replaying a list does not allocate on the java heap.
+ * </p>
+ * Example:
+ * <pre>
+ * CLCommandList list = new CLCommandList();
+ * MemorySlot input = list.createMemorySlot(bufferA);
+ * ValueSlot  size  = list.createIntSlot();
+ * list.putWriteBuffer(input, false)
+ *     .putArg(kernel, 0, input).putArg(kernel, 1, size)
+ *     .put1DRangeKernel(kernel, 0, globalWorkSize, localWorkSize)
+ *     .putReadBuffer(input, true);
+ * ...
+ * size.set(elements);
+ * queue.putCommandList(list);
+ * </pre>
+ * <p>
+ * The wait list passed to {@link CLCommandQueue#putCommandList(CLCommandList, CLEventList, CLEventList)}
+ * only applies to the first enqueued command of the list. Commands of the list are not chained with events,
+ * on an out-of-order queue they are only ordered by recorded barriers, see {@link #putBarrier()}.
+ * </p>
+ * <p>
+ * CLCommandList is not threadsafe.
+ * </p>
+ * @see CLCommandQueue#putCommandList(CLCommandList)
+ * @author Michael Bien
+ */
+public final class CLCommandList {
+
+    // opcodes, must match the native replay loop
+    static final int WRITE_BUFFER = 1;
+    static final int READ_BUFFER  = 2;
+    static final int COPY_BUFFER  = 3;
+    static final int SET_ARG      = 4;
+    static final int SET_MEM_ARG  = 5;
+    static final int ND_RANGE     = 6;
+    static final int BARRIER      = 7;
+
+    /**
+     * Native command stream, one 64bit word per operand.
+     */
+    ByteBuffer commands;
+
+    /**
+     * Host buffers referenced by transfer commands.
+     */
+    Buffer[] hostBuffers;
+
+    /**
+     * Stream length in words.
+     */
+    int length;
+
+    /**
+     * Number of referenced host buffers.
+     */
+    private int hostBufferCount;
+
+    /**
+     * Word position of the last enqueued command, -1 if there is none.
+     */
+    int lastEnqueue;
+
+    private CLContext context;
+
+    /**
+     * Kernels whose arguments are set by this list.
+     */
+    private CLKernel[] argKernels;
+    private int argKernelCount;
+
+    public CLCommandList() {
+        this(64);
+    }
+
+    /**
+     * Creates an empty command list with an initial capacity of <code>words</code> 64bit operands.
+     */
+    public CLCommandList(int words) {
+        if(words < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1 but was "+words);
+        }
+        this.commands = Buffers.newDirectByteBuffer(words*8);
+        this.hostBuffers = new Buffer[4];
+        this.lastEnqueue = -1;
+        this.argKernels = new CLKernel[4];
+    }
+
+    /**
+     * Creates a slot for a {@link CLMemory} object which can be rebound between replays.
+     */
+    public MemorySlot createMemorySlot(CLMemory<?> initial) {
+        return new MemorySlot(initial);
+    }
+
+    /**
+     * Creates a slot for a 32bit integer kernel argument.
+     */
+    public ValueSlot createIntSlot() {
+        return new ValueSlot(4);
+    }
+
+    /**
+     * Creates a slot for a 64bit integer kernel argument.
+     */
+    public ValueSlot createLongSlot() {
+        return new ValueSlot(8);
+    }
+
+    /**
+     * Creates a slot for a 32bit floating point kernel argument.
+     */
+    public ValueSlot createFloatSlot() {
+        return new ValueSlot(4);
+    }
+
+    /**
+     * Creates a slot for a 64bit floating point kernel argument.
+     */
+    public ValueSlot createDoubleSlot() {
+        return new ValueSlot(8);
+    }
+
+    /**
+     * Creates a slot for a work size or work offset.
+     */
+    public ValueSlot createSizeSlot() {
+        return new ValueSlot(8);
+    }
+
+    /**
+     * Records a write of the complete host buffer of the given CLBuffer.
+     * @see CLCommandQueue#putWriteBuffer(CLBuffer, boolean)
+     */
+    public CLCommandList putWriteBuffer(CLBuffer<?> writeBuffer, boolean blockingWrite) {
+        return putWriteBuffer(createMemorySlot(writeBuffer), blockingWrite);
+    }
+
+    /**
+     * Records a write of the complete host buffer of the CLBuffer bound to the given slot.
+     */
+    public CLCommandList putWriteBuffer(MemorySlot writeBuffer, boolean blockingWrite) {
+        return putTransfer(WRITE_BUFFER, writeBuffer, blockingWrite);
+    }
+
+    /**
+     * Records a read into the complete host buffer of the given CLBuffer.
+     * @see CLCommandQueue#putReadBuffer(CLBuffer, boolean)
+     */
+    public CLCommandList putReadBuffer(CLBuffer<?> readBuffer, boolean blockingRead) {
+        return putReadBuffer(createMemorySlot(readBuffer), blockingRead);
+    }
+
+    /**
+     * Records a read into the complete host buffer of the CLBuffer bound to the given slot.
+     */
+    public CLCommandList putReadBuffer(MemorySlot readBuffer, boolean blockingRead) {
+        return putTransfer(READ_BUFFER, readBuffer, blockingRead);
+    }
+
+    /**
+     * Records a copy of the complete source buffer into the destination buffer.
+     * @see CLCommandQueue#putCopyBuffer(CLBuffer, CLBuffer)
+     */
+    public CLCommandList putCopyBuffer(CLBuffer<?> src, CLBuffer<?> dest) {
+        return putCopyBuffer(src, dest, src.getNIOSize());
+    }
+
+    /**
+     * Records a copy of <code>bytesToCopy</code> bytes from the source buffer into the destination buffer.
+     */
+    public CLCommandList putCopyBuffer(CLBuffer<?> src, CLBuffer<?> dest, long bytesToCopy) {
+        checkContext(src);
+        checkContext(dest);
+        lastEnqueue = length;
+        putWord(COPY_BUFFER);
+        putWord(src.ID);
+        putWord(dest.ID);
+        putWord(0);
+        putWord(0);
+        putWord(bytesToCopy);
+        return this;
+    }
+
+    /**
+     * Records setting a CLMemory kernel argument.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, CLMemory<?> value) {
+        return putArg(kernel, index, createMemorySlot(value));
+    }
+
+    /**
+     * Records setting a kernel argument to the CLMemory object bound to the given slot.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, MemorySlot value) {
+        checkArg(kernel, index);
+        putWord(SET_MEM_ARG);
+        putWord(kernel.ID);
+        putWord(index);
+        value.add(length);
+        putWord(value.memory.ID);
+        return this;
+    }
+
+    /**
+     * Records setting a 32bit integer kernel argument.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, int value) {
+        ValueSlot slot = createIntSlot();
+        slot.set(value);
+        return putArg(kernel, index, slot);
+    }
+
+    /**
+     * Records setting a 64bit integer kernel argument.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, long value) {
+        ValueSlot slot = createLongSlot();
+        slot.set(value);
+        return putArg(kernel, index, slot);
+    }
+
+    /**
+     * Records setting a 32bit floating point kernel argument.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, float value) {
+        ValueSlot slot = createFloatSlot();
+        slot.set(value);
+        return putArg(kernel, index, slot);
+    }
+
+    /**
+     * Records setting a 64bit floating point kernel argument.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, double value) {
+        ValueSlot slot = createDoubleSlot();
+        slot.set(value);
+        return putArg(kernel, index, slot);
+    }
+
+    /**
+     * Records setting a kernel argument to the value of the given slot.
+     */
+    public CLCommandList putArg(CLKernel kernel, int index, ValueSlot value) {
+        checkArg(kernel, index);
+        putWord(SET_ARG);
+        putWord(kernel.ID);
+        putWord(index);
+        putWord(value.size);
+        value.add(length);
+        putWord(0);
+        value.write(length-1);
+        return this;
+    }
+
+    /**
+     * Records a 1D kernel execution.
+     * @see CLCommandQueue#put1DRangeKernel(CLKernel, long, long, long)
+     */
+    public CLCommandList put1DRangeKernel(CLKernel kernel, long globalWorkOffset, long globalWorkSize, long localWorkSize) {
+        ValueSlot global = createSizeSlot();
+        global.set(globalWorkSize);
+        ValueSlot local = createSizeSlot();
+        local.set(localWorkSize);
+        return put1DRangeKernel(kernel, globalWorkOffset, global, local);
+    }
+
+    /**
+     * Records a 1D kernel execution with work sizes bound to the given slots.
+     * A local work size of 0 lets the OpenCL implementation choose the local work size.
+     */
+    public CLCommandList put1DRangeKernel(CLKernel kernel, long globalWorkOffset, ValueSlot globalWorkSize, ValueSlot localWorkSize) {
+        checkContext(kernel);
+        lastEnqueue = length;
+        putWord(ND_RANGE);
+        putWord(kernel.ID);
+        putWord(1);
+        putWord(globalWorkOffset);  putWord(0);  putWord(0);
+        globalWorkSize.add(length);
+        putWord(0);  putWord(0);  putWord(0);
+        globalWorkSize.write(length-3);
+        localWorkSize.add(length);
+        putWord(0);  putWord(0);  putWord(0);
+        localWorkSize.write(length-3);
+        return this;
+    }
+
+    /**
+     * Records a 2D kernel execution.
+     * @see CLCommandQueue#put2DRangeKernel(CLKernel, long, long, long, long, long, long)
+     */
+    public CLCommandList put2DRangeKernel(CLKernel kernel, long globalWorkOffsetX, long globalWorkOffsetY,
+                                                           long globalWorkSizeX, long globalWorkSizeY,
+                                                           long localWorkSizeX, long localWorkSizeY) {
+        checkContext(kernel);
+        lastEnqueue = length;
+        putWord(ND_RANGE);
+        putWord(kernel.ID);
+        putWord(2);
+        putWord(globalWorkOffsetX);  putWord(globalWorkOffsetY);  putWord(0);
+        putWord(globalWorkSizeX);    putWord(globalWorkSizeY);    putWord(0);
+        putWord(localWorkSizeX);     putWord(localWorkSizeY);     putWord(0);
+        return this;
+    }
+
+    /**
+     * Records a barrier.
+     * @see CLCommandQueue#putBarrier()
+     */
+    public CLCommandList putBarrier() {
+        putWord(BARRIER);
+        return this;
+    }
+
+    /**
+     * Removes all recorded commands.
+     */
+    public CLCommandList clear() {
+        for (int i = 0; i < hostBufferCount; i++) {
+            hostBuffers[i] = null;
+        }
+        hostBufferCount = 0;
+        length = 0;
+        lastEnqueue = -1;
+        context = null;
+        for (int i = 0; i < argKernelCount; i++) {
+            argKernels[i] = null;
+        }
+        argKernelCount = 0;
+        return this;
+    }
+
+    /**
+     * Returns the number of recorded 64bit command words.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns true if this list contains no commands.
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Returns the context of the recorded objects or null if the list is empty.
+     */
+    public CLContext getContext() {
+        return context;
+    }
+
+    private CLCommandList putTransfer(int op, MemorySlot slot, boolean blocking) {
+        lastEnqueue = length;
+        putWord(op);
+        slot.add(length);
+        putWord(slot.memory.ID);
+        putWord(blocking ? 1 : 0);
+        putWord(0);
+        slot.addSize(length);
+        putWord(slot.memory.getNIOSize());
+        slot.addHost(length);
+        putWord(slot.hostIndex);
+        slot.addHostOffset(length);
+        putWord(Buffers.getDirectBufferByteOffset(slot.memory.buffer));
+        return this;
+    }
+
+    private void checkArg(CLKernel kernel, int index) {
+        checkContext(kernel);
+        if(index >= kernel.numArgs || index < 0) {
+            throw new IndexOutOfBoundsException("kernel "+ kernel +" has "+kernel.numArgs+
+                    " arguments, can not record argument with index "+index);
+        }
+        if(!kernel.getProgram().isExecutable()) {
+            throw new IllegalStateException("can not record program" +
+                    " arguments for a not executable program. "+kernel.getProgram());
+        }
+        for (int i = 0; i < argKernelCount; i++) {
+            if(argKernels[i] == kernel) {
+                return;
+            }
+        }
+        if(argKernelCount == argKernels.length) {
+            CLKernel[] grown = new CLKernel[argKernels.length*2];
+            System.arraycopy(argKernels, 0, grown, 0, argKernels.length);
+            argKernels = grown;
+        }
+        argKernels[argKernelCount++] = kernel;
+    }
+
+    /**
+     * Invalidates the argument caches of all kernels whose arguments have been set by a replay.
+     */
+    void invalidateArgCaches() {
+        for (int i = 0; i < argKernelCount; i++) {
+            argKernels[i].invalidateArgCache();
+        }
+    }
+
+    private void checkContext(CLObject object) {
+        if(context == null) {
+            context = object.getContext();
+        }else if(context != object.getContext()) {
+            throw new IllegalArgumentException(object+" does not belong to the context of this command list.");
+        }
+    }
+
+    private void putWord(long value) {
+        if((length+1)*8 > commands.capacity()) {
+            ByteBuffer grown = Buffers.newDirectByteBuffer(commands.capacity()*2);
+            commands.rewind();
+            grown.put(commands).rewind();
+            commands = grown;
+        }
+        commands.putLong(length*8, value);
+        length++;
+    }
+
+    private int addHostBuffer(Buffer buffer) {
+        if(hostBufferCount == hostBuffers.length) {
+            Buffer[] grown = new Buffer[hostBuffers.length*2];
+            System.arraycopy(hostBuffers, 0, grown, 0, hostBuffers.length);
+            hostBuffers = grown;
+        }
+        hostBuffers[hostBufferCount] = buffer;
+        return hostBufferCount++;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [words: "+length+" host buffers: "+hostBufferCount+"]";
+    }
+
+    /**
+     * A patchable operand of a recorded command list.
+     */
+    public abstract class Slot {
+
+        private int[] positions = new int[2];
+        private int count;
+
+        void add(int position) {
+            if(count == positions.length) {
+                int[] grown = new int[positions.length*2];
+                System.arraycopy(positions, 0, grown, 0, positions.length);
+                positions = grown;
+            }
+            positions[count++] = position;
+        }
+
+        void patch(long value) {
+            for (int i = 0; i < count; i++) {
+                commands.putLong(positions[i]*8, value);
+            }
+        }
+
+        int count() {
+            return count;
+        }
+
+        int position(int i) {
+            return positions[i];
+        }
+
+    }
+
+    /**
+     * Slot for a {@link CLMemory} object, used as transfer target or kernel argument.
+     */
+    public final class MemorySlot extends Slot {
+
+        private CLMemory<?> memory;
+        private final int hostIndex;
+
+        private final Slot sizes = new Slot(){};
+        private final Slot hosts = new Slot(){};
+        private final Slot hostOffsets = new Slot(){};
+
+        private MemorySlot(CLMemory<?> memory) {
+            checkContext(memory);
+            this.memory = memory;
+            this.hostIndex = addHostBuffer(memory.buffer);
+        }
+
+        void addSize(int position) {
+            sizes.add(position);
+        }
+
+        void addHost(int position) {
+            hosts.add(position);
+        }
+
+        void addHostOffset(int position) {
+            hostOffsets.add(position);
+        }
+
+        /**
+         * Binds a new memory object to this slot. The new object must have the same size as the
+         * previously bound object if the slot is used for transfers.
+         */
+        public MemorySlot bind(CLMemory<?> memory) {
+            if(memory.getContext() != context) {
+                throw new IllegalArgumentException(memory+" does not belong to the context of this command list.");
+            }
+            this.memory = memory;
+            patch(memory.ID);
+            sizes.patch((long)memory.getNIOSize());
+            hostOffsets.patch(Buffers.getDirectBufferByteOffset(memory.buffer));
+            hostBuffers[hostIndex] = memory.buffer;
+            return this;
+        }
+
+        public CLMemory<?> get() {
+            return memory;
+        }
+    }
+
+    /**
+     * Slot for a primitive kernel argument or work size.
+     */
+    public final class ValueSlot extends Slot {
+
+        private final int size;
+        private long bits;
+
+        private ValueSlot(int size) {
+            this.size = size;
+        }
+
+        public ValueSlot set(int value) {
+            return set((long)value);
+        }
+
+        public ValueSlot set(long value) {
+            bits = value;
+            for (int i = 0; i < count(); i++) {
+                write(position(i));
+            }
+            return this;
+        }
+
+        public ValueSlot set(float value) {
+            return set((long)Float.floatToRawIntBits(value));
+        }
+
+        public ValueSlot set(double value) {
+            return set(Double.doubleToRawLongBits(value));
+        }
+
+        // narrow values are stored in the first bytes of the word, as expected by clSetKernelArg
+        void write(int position) {
+            if(size == 4) {
+                commands.putLong(position*8, 0).putInt(position*8, (int)bits);
+            }else{
+                commands.putLong(position*8, bits);
+            }
+        }
+
+        /**
+         * Returns the argument size in bytes.
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ import com.jogamp.common.nio.CachedBufferFactory;
 import com.jogamp.opencl.llb.gl.CLGL;
 import com.jogamp.common.nio.NativeSizeBuffer;
 import com.jogamp.opencl.gl.CLGLObject;
+import com.jogamp.opencl.CLEvent.CommandType;
 import com.jogamp.opencl.llb.CLCommandQueueBinding;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -64,6 +65,11 @@ public class CLCommandQueue extends CLObjectResource {
     private final CLDevice device;
     private long properties;
 
+    private CLSamplingProfiler profiler;
+    private CLFlushPolicy flushPolicy;
+    private CLStagingPool stagingPool;
+    private CLWorkGroupTuner workGroupTuner;
+
     /*
      * Those direct memory buffers are used to move data between the JVM and OpenCL.
      */
@@ -121,29 +127,137 @@ public class CLCommandQueue extends CLObjectResource {
      */
     public CLCommandQueue putWriteBuffer(CLBuffer<?> writeBuffer, boolean blockingWrite, CLEventList condition, CLEventList events) {
 
+        if(stagingPool != null && stagingPool.accepts(writeBuffer)) {
+            return putStagedWriteBuffer(writeBuffer, blockingWrite, condition, events);
+        }
+
         NativeSizeBuffer conditionIDs = null;
         int conditions = 0;
         if(condition != null) {
             conditionIDs = condition.IDsView;
             conditions   = condition.size;
         }
-        
+
         int ret = cl.clEnqueueWriteBuffer(
                 ID, writeBuffer.ID, clBoolean(blockingWrite),
                 0, writeBuffer.getNIOSize(), writeBuffer.buffer,
-                conditions, conditionIDs, events==null ? null : events.IDs);
+                conditions, conditionIDs, eventIDs(events));
 
         if(ret != CL_SUCCESS) {
             throw newException(ret, "can not enqueue write-buffer: " + writeBuffer + " with " + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
+        createEvent(events, CommandType.WRITE_BUFFER, null, writeBuffer.getNIOSize());
+
+        return this;
+    }
+
+    private CLCommandQueue putStagedWriteBuffer(CLBuffer<?> writeBuffer, boolean blockingWrite, CLEventList condition, CLEventList events) {
+
+        NativeSizeBuffer conditionIDs = null;
+        int conditions = 0;
+        if(condition != null) {
+            conditionIDs = condition.IDsView;
+            conditions   = condition.size;
+        }
+
+        long bytes = writeBuffer.getNIOSize();
+        CLStagingPool.Staging staging = stagingPool.acquire(bytes);
+        boolean enqueued = false;
+        try{
+            staging.copyFrom(writeBuffer.buffer);
+
+            // non blocking writes need an event to know when the staging buffer can be reused
+            NativeSizeBuffer eventID = null;
+            if(events != null) {
+                eventID = events.IDs;
+            }else if(!blockingWrite) {
+                eventID = staging.eventID.position(0);
+            }
+
+            int ret = cl.clEnqueueWriteBuffer(
+                    ID, writeBuffer.ID, clBoolean(blockingWrite),
+                    0, bytes, staging.mapped,
+                    conditions, conditionIDs, eventID);
+
+            if(ret != CL_SUCCESS) {
+                throw newException(ret, "can not enqueue staged write-buffer: " + writeBuffer + " with " + toStr(condition, events));
+            }
+            enqueued = true;
+        }finally{
+            if(!enqueued) {
+                stagingPool.release(staging);
+            }
+        }
+
+        enqueued(events, bytes);
+
+        if(blockingWrite) {
+            stagingPool.release(staging);
+        }else if(events != null) {
+            stagingPool.inFlight(staging, events.getEvent(events.size()-1));
+        }else{
+            stagingPool.inFlight(staging, staging.eventID.get(0));
         }
 
         return this;
     }
 
+    /**
+     * Calls {@native clEnqueueWriteBuffer} for <code>bytes</code> bytes starting at the byte <code>offset</code>
+     * of both, the CLBuffer and its host buffer.
+     */
+    public CLCommandQueue putWriteBuffer(CLBuffer<?> writeBuffer, long offset, long bytes, boolean blockingWrite) {
+        return putWriteBuffer(writeBuffer, offset, bytes, blockingWrite, null, null);
+    }
+
+    /**
+     * Calls {@native clEnqueueWriteBuffer} for <code>bytes</code> bytes starting at the byte <code>offset</code>
+     * of both, the CLBuffer and its host buffer.
+     */
+    public CLCommandQueue putWriteBuffer(CLBuffer<?> writeBuffer, long offset, long bytes, boolean blockingWrite, CLEventList events) {
+        return putWriteBuffer(writeBuffer, offset, bytes, blockingWrite, null, events);
+    }
+
+    /**
+     * Calls {@native clEnqueueWriteBuffer} for <code>bytes</code> bytes starting at the byte <code>offset</code>
+     * of both, the CLBuffer and its host buffer.
+     */
+    public CLCommandQueue putWriteBuffer(CLBuffer<?> writeBuffer, long offset, long bytes, boolean blockingWrite, CLEventList condition, CLEventList events) {
+
+        checkRange(writeBuffer, offset, bytes);
+
+        NativeSizeBuffer conditionIDs = null;
+        int conditions = 0;
+        if(condition != null) {
+            conditionIDs = condition.IDsView;
+            conditions   = condition.size;
+        }
+
+        Buffer host = writeBuffer.buffer;
+        int position = host.position();
+        host.position((int)(offset / writeBuffer.getElementSize()));
+
+        int ret;
+        try{
+            ret = cl.clEnqueueWriteBuffer(
+                    ID, writeBuffer.ID, clBoolean(blockingWrite),
+                    offset, bytes, host,
+                    conditions, conditionIDs, eventIDs(events));
+        }finally{
+            host.position(position);
+        }
+
+        if(ret != CL_SUCCESS) {
+            throw newException(ret, "can not enqueue write-buffer: " + writeBuffer + " offset: " + offset
+                    + " bytes: " + bytes + " with " + toStr(condition, events));
+        }
+
+        createEvent(events, CommandType.WRITE_BUFFER, null, bytes);
+
+        return this;
+    }
+
     /**
      * Calls {@native clEnqueueReadBuffer}.
      */
@@ -165,26 +279,161 @@ public class CLCommandQueue extends CLObjectResource {
      */
     public CLCommandQueue putReadBuffer(CLBuffer<?> readBuffer, boolean blockingRead, CLEventList condition, CLEventList events) {
 
+        if(blockingRead && stagingPool != null && stagingPool.accepts(readBuffer)) {
+            return putStagedReadBuffer(readBuffer, condition, events);
+        }
+
         NativeSizeBuffer conditionIDs = null;
         int conditions = 0;
         if(condition != null) {
             conditionIDs = condition.IDsView;
             conditions   = condition.size;
         }
-        
+
         int ret = cl.clEnqueueReadBuffer(
                 ID, readBuffer.ID, clBoolean(blockingRead),
                 0, readBuffer.getNIOSize(), readBuffer.buffer,
-                conditions, conditionIDs, events==null ? null : events.IDs);
+                conditions, conditionIDs, eventIDs(events));
 
         if(ret != CL_SUCCESS) {
             throw newException(ret, "can not enqueue read-buffer: " + readBuffer + " with " + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
+        createEvent(events, CommandType.READ_BUFFER, null, readBuffer.getNIOSize());
+
+        return this;
+    }
+
+    private CLCommandQueue putStagedReadBuffer(CLBuffer<?> readBuffer, CLEventList condition, CLEventList events) {
+
+        NativeSizeBuffer conditionIDs = null;
+        int conditions = 0;
+        if(condition != null) {
+            conditionIDs = condition.IDsView;
+            conditions   = condition.size;
+        }
+
+        long bytes = readBuffer.getNIOSize();
+        CLStagingPool.Staging staging = stagingPool.acquire(bytes);
+        try{
+            int ret = cl.clEnqueueReadBuffer(
+                    ID, readBuffer.ID, clBoolean(true),
+                    0, bytes, staging.mapped,
+                    conditions, conditionIDs, events==null ? null : events.IDs);
+
+            if(ret != CL_SUCCESS) {
+                throw newException(ret, "can not enqueue staged read-buffer: " + readBuffer + " with " + toStr(condition, events));
+            }
+
+            enqueued(events, bytes);
+            staging.copyTo(readBuffer.buffer);
+        }finally{
+            stagingPool.release(staging);
+        }
+
+        return this;
+    }
+
+    /**
+     * Calls {@native clEnqueueReadBuffer} for <code>bytes</code> bytes starting at the byte <code>offset</code>
+     * of both, the CLBuffer and its host buffer.
+     */
+    public CLCommandQueue putReadBuffer(CLBuffer<?> readBuffer, long offset, long bytes, boolean blockingRead) {
+        return putReadBuffer(readBuffer, offset, bytes, blockingRead, null, null);
+    }
+
+    /**
+     * Calls {@native clEnqueueReadBuffer} for <code>bytes</code> bytes starting at the byte <code>offset</code>
+     * of both, the CLBuffer and its host buffer.
+     */
+    public CLCommandQueue putReadBuffer(CLBuffer<?> readBuffer, long offset, long bytes, boolean blockingRead, CLEventList events) {
+        return putReadBuffer(readBuffer, offset, bytes, blockingRead, null, events);
+    }
+
+    /**
+     * Calls {@native clEnqueueReadBuffer} for <code>bytes</code> bytes starting at the byte <code>offset</code>
+     * of both, the CLBuffer and its host buffer.
+     */
+    public CLCommandQueue putReadBuffer(CLBuffer<?> readBuffer, long offset, long bytes, boolean blockingRead, CLEventList condition, CLEventList events) {
+
+        checkRange(readBuffer, offset, bytes);
+
+        NativeSizeBuffer conditionIDs = null;
+        int conditions = 0;
+        if(condition != null) {
+            conditionIDs = condition.IDsView;
+            conditions   = condition.size;
+        }
+
+        Buffer host = readBuffer.buffer;
+        int position = host.position();
+        host.position((int)(offset / readBuffer.getElementSize()));
+
+        int ret;
+        try{
+            ret = cl.clEnqueueReadBuffer(
+                    ID, readBuffer.ID, clBoolean(blockingRead),
+                    offset, bytes, host,
+                    conditions, conditionIDs, eventIDs(events));
+        }finally{
+            host.position(position);
         }
 
+        if(ret != CL_SUCCESS) {
+            throw newException(ret, "can not enqueue read-buffer: " + readBuffer + " offset: " + offset
+                    + " bytes: " + bytes + " with " + toStr(condition, events));
+        }
+
+        createEvent(events, CommandType.READ_BUFFER, null, bytes);
+
+        return this;
+    }
+
+    /**
+     * Uploads all dirty ranges of the buffer using one {@native clEnqueueWriteBuffer} per coalesced range
+     * and clears the dirty state.
+     * @see CLBuffer#enableDirtyTracking(int)
+     */
+    public CLCommandQueue putSyncBuffer(CLBuffer<?> buffer, boolean blockingWrite) {
+        return putSyncBuffer(buffer, blockingWrite, null, null);
+    }
+
+    /**
+     * Uploads all dirty ranges of the buffer using one {@native clEnqueueWriteBuffer} per coalesced range
+     * and clears the dirty state. Every transfer waits for the condition. If the buffer had more than one
+     * dirty range, the event is created by a {@native clEnqueueMarker} enqueued after the transfers
+     * and completes with all of them. No event is created if the buffer was not dirty.
+     * @see CLBuffer#enableDirtyTracking(int)
+     */
+    public CLCommandQueue putSyncBuffer(CLBuffer<?> buffer, boolean blockingWrite, CLEventList condition, CLEventList events) {
+
+        CLDirtyRanges ranges = buffer.getDirtyRanges();
+        if(ranges == null) {
+            throw new IllegalStateException("dirty tracking is not enabled for "+buffer);
+        }
+
+        int count = ranges.size();
+        if(count == 1) {
+            putWriteBuffer(buffer, ranges.getOffset(0), ranges.getLength(0), blockingWrite, condition, events);
+        }else if(count > 1) {
+            // ranges may run in any order on out-of-order queues, the marker completes after all of them
+            CLEventList transfers = new CLEventList(count);
+            try{
+                for (int i = 0; i < count; i++) {
+                    putWriteBuffer(buffer, ranges.getOffset(i), ranges.getLength(i), false, condition, transfers);
+                }
+                if(events != null) {
+                    putMarker(events);
+                }
+                if(blockingWrite) {
+                    transfers.waitForEvents();
+                }
+            }finally{
+                transfers.release();
+            }
+        }
+        ranges.clear();
+
         return this;
     }
 
@@ -223,16 +472,14 @@ public class CLCommandQueue extends CLObjectResource {
 
         int ret = cl.clEnqueueCopyBuffer(
                         ID, src.ID, dest.ID, srcOffset, destOffset, bytesToCopy,
-                        conditions, conditionIDs, events==null ? null : events.IDs);
+                        conditions, conditionIDs, eventIDs(events));
 
         if(ret != CL_SUCCESS) {
             throw newException(ret, "can not enqueue copy-buffer from " + src + " to " + dest + " with srcOffset: "+ srcOffset
                     + " dstOffset: " + destOffset + " bytesToCopy: " + bytesToCopy + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        createEvent(events, CommandType.COPY_BUFFER, null, bytesToCopy);
 
         return this;
     }
@@ -308,9 +555,7 @@ public class CLCommandQueue extends CLObjectResource {
                                         rangeX, rangeY, rangeZ, condition, events)  );
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, (long)rangeX*rangeY*rangeZ);
 
         return this;
     }
@@ -387,9 +632,7 @@ public class CLCommandQueue extends CLObjectResource {
                                         rangeX, rangeY, rangeZ, condition, events)  );
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, (long)rangeX*rangeY*rangeZ);
 
         return this;
     }
@@ -469,9 +712,7 @@ public class CLCommandQueue extends CLObjectResource {
                        + " range: " + toStr(rangeX, rangeY, rangeZ) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, (long)rangeX*rangeY*rangeZ);
 
         return this;
     }
@@ -533,9 +774,7 @@ public class CLCommandQueue extends CLObjectResource {
                        + " origin: " + toStr(originX, originY)+ " range: " + toStr(rangeX, rangeY) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(writeImage, rangeX, rangeY, 1));
         return this;
     }
 
@@ -594,9 +833,7 @@ public class CLCommandQueue extends CLObjectResource {
                        + " origin: " + toStr(originX, originY, originZ)+ " range: " + toStr(rangeX, rangeY, rangeZ) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(writeImage, rangeX, rangeY, rangeZ));
         return this;
     }
 
@@ -656,9 +893,7 @@ public class CLCommandQueue extends CLObjectResource {
                        + " origin: " + toStr(originX, originY)+ " range: " + toStr(rangeX, rangeY) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(readImage, rangeX, rangeY, 1));
         return this;
     }
 
@@ -716,9 +951,7 @@ public class CLCommandQueue extends CLObjectResource {
                        + " origin: " + toStr(originX, originY, originZ)+ " range: " + toStr(rangeX, rangeY, rangeZ) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(readImage, rangeX, rangeY, rangeZ));
         return this;
     }
 
@@ -783,9 +1016,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " range:  " + toStr(rangeX, rangeY) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(srcImage, rangeX, rangeY, 1));
         return this;
     }
 
@@ -850,9 +1081,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " range:  " + toStr(rangeX, rangeY, rangeZ) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(srcImage, rangeX, rangeY, rangeZ));
         return this;
     }
     
@@ -916,9 +1145,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " range:  " + toStr(rangeX, rangeY) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(dstImage, rangeX, rangeY, 1));
         return this;
     }
     
@@ -981,9 +1208,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " range:  " + toStr(rangeX, rangeY, dstOriginZ) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(dstImage, rangeX, rangeY, rangeZ));
         return this;
     }
 
@@ -1047,9 +1272,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " dstOffset: " + dstOffset + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(srcImage, rangeX, rangeY, 1));
         return this;
     }
     
@@ -1112,9 +1335,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " dstOffset: " + dstOffset + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, imageBytes(srcImage, rangeX, rangeY, rangeZ));
         return this;
     }
 
@@ -1167,9 +1388,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " offset: " + offset + " lenght: " + length + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, 0);
 
         return mappedBuffer;
     }
@@ -1232,9 +1451,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " offset: " + toStr(offsetX, offsetY) + " range: " + toStr(rangeX, rangeY) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, 0);
 
         return mappedImage;
     }
@@ -1295,9 +1512,7 @@ public class CLCommandQueue extends CLObjectResource {
                     + " offset: " + toStr(offsetX, offsetY, offsetZ) + " range: " + toStr(rangeX, rangeY, rangeZ) + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, 0);
 
         return mappedImage;
     }
@@ -1334,9 +1549,7 @@ public class CLCommandQueue extends CLObjectResource {
             throw newException(ret, "can not unmap " + memory + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, 0);
         return this;
     }
 
@@ -1348,7 +1561,7 @@ public class CLCommandQueue extends CLObjectResource {
         if(ret != CL_SUCCESS) {
             throw newException(ret, "can not enqueue marker " + events);
         }
-        events.createEvent(context);
+        enqueued(events, 0);
         return this;
     }
 
@@ -1365,6 +1578,7 @@ public class CLCommandQueue extends CLObjectResource {
             if(ret != CL_SUCCESS) {
                 throw newException(ret, "can not "+ (blockingWait?"blocking": "") +" wait for event #" + index+ " in "+list);
             }
+            enqueued(null, 0);
         }
 
         return this;
@@ -1381,6 +1595,7 @@ public class CLCommandQueue extends CLObjectResource {
             if(ret != CL_SUCCESS) {
                 throw newException(ret, "can not "+ (blockingWait?"blocking": "") +" wait for events " + list);
             }
+            enqueued(null, 0);
         }
         return this;
     }
@@ -1391,6 +1606,7 @@ public class CLCommandQueue extends CLObjectResource {
     public CLCommandQueue putBarrier() {
         int ret = cl.clEnqueueBarrier(ID);
         checkForError(ret, "can not enqueue Barrier");
+        enqueued(null, 0);
         return this;
     }
 
@@ -1427,13 +1643,11 @@ public class CLCommandQueue extends CLObjectResource {
             conditions   = condition.size;
         }
 
-        int ret = cl.clEnqueueTask(ID, kernel.ID, conditions, conditionIDs, events==null ? null : events.IDs);
+        int ret = cl.clEnqueueTask(ID, kernel.ID, conditions, conditionIDs, eventIDs(events));
         if(ret != CL_SUCCESS) {
             checkForError(ret, "can not enqueue Task: " + kernel + toStr(condition, events));
         }
-        if(events != null) {
-            events.createEvent(context);
-        }
+        createEvent(events, CommandType.TASK, kernel.name, 0);
         return this;
     }
 
@@ -1610,7 +1824,7 @@ public class CLCommandQueue extends CLObjectResource {
                 globalWorkSize, 
                 localWorkSize, 
                 conditions, conditionIDs,
-                events==null ? null : events.IDs);
+                eventIDs(events));
 
         if(ret != CL_SUCCESS) {
             throw newException(ret, "can not enqueue "+workDimension+"DRange " + kernel+ "\n"
@@ -1620,10 +1834,91 @@ public class CLCommandQueue extends CLObjectResource {
                     + " " + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
+        createEvent(events, CommandType.NDRANGE_KERNEL, kernel.name, 0);
+
+        return this;
+    }
+
+    /**
+     * Sets all arguments packed in the launcher and calls {@native clEnqueueNDRangeKernel} in a single native call.
+     */
+    public CLCommandQueue put1DRangeKernel(CLKernelLauncher launcher, long globalWorkOffset, long globalWorkSize, long localWorkSize) {
+        this.put1DRangeKernel(launcher, globalWorkOffset, globalWorkSize, localWorkSize, null, null);
+        return this;
+    }
+
+    /**
+     * Sets all arguments packed in the launcher and calls {@native clEnqueueNDRangeKernel} in a single native call.
+     */
+    public CLCommandQueue put1DRangeKernel(CLKernelLauncher launcher, long globalWorkOffset, long globalWorkSize, long localWorkSize, CLEventList events) {
+        this.put1DRangeKernel(launcher, globalWorkOffset, globalWorkSize, localWorkSize, null, events);
+        return this;
+    }
+
+    /**
+     * Sets all arguments packed in the launcher and calls {@native clEnqueueNDRangeKernel} in a single native call.
+     */
+    public CLCommandQueue put1DRangeKernel(CLKernelLauncher launcher, long globalWorkOffset, long globalWorkSize, long localWorkSize, CLEventList condition, CLEventList events) {
+        NativeSizeBuffer globWO = null;
+        NativeSizeBuffer globWS = null;
+        NativeSizeBuffer locWS = null;
+
+        if(globalWorkOffset != 0) {
+            globWO = launcher.gwo;
+            globWO.put(0, globalWorkOffset);
+        }
+        if(globalWorkSize != 0) {
+            globWS = launcher.gws;
+            globWS.put(0, globalWorkSize);
+        }
+        if(localWorkSize != 0) {
+            locWS = launcher.lws;
+            locWS.put(0, localWorkSize);
         }
 
+        this.putNDRangeKernel(launcher, 1, globWO, globWS, locWS, condition, events);
+        return this;
+    }
+
+    /**
+     * Sets all arguments packed in the launcher and calls {@native clEnqueueNDRangeKernel} in a single native call.
+     */
+    public CLCommandQueue putNDRangeKernel(CLKernelLauncher launcher, int workDimension, NativeSizeBuffer globalWorkOffset,
+            NativeSizeBuffer globalWorkSize, NativeSizeBuffer localWorkSize, CLEventList condition, CLEventList events) {
+
+        launcher.checkLaunch();
+
+        NativeSizeBuffer conditionIDs = null;
+        int conditions = 0;
+        if(condition != null) {
+            conditionIDs = condition.IDsView;
+            conditions   = condition.size;
+        }
+
+        CLKernel kernel = launcher.getKernel();
+        int ret = cl.clEnqueueNDRangeKernelWithArgs(
+                ID, kernel.ID, launcher.count, launcher.args,
+                workDimension, globalWorkOffset, globalWorkSize, localWorkSize,
+                conditions, conditionIDs,
+                eventIDs(events), launcher.failed);
+
+        launcher.rewind();
+        kernel.invalidateArgCache();
+
+        if(ret != CL_SUCCESS) {
+            int failedArg = launcher.getFailedArg();
+            if(failedArg >= 0) {
+                throw newException(ret, "error setting arg "+failedArg+" of "+kernel);
+            }
+            throw newException(ret, "can not enqueue "+workDimension+"DRange " + kernel+ "\n"
+                    + " with gwo: " + toStr(globalWorkOffset)
+                    + " gws: " + toStr(globalWorkSize)
+                    + " lws: " + toStr(localWorkSize)
+                    + " " + toStr(condition, events));
+        }
+
+        createEvent(events, CommandType.NDRANGE_KERNEL, kernel.name, 0);
+
         return this;
     }
 
@@ -1652,12 +1947,67 @@ public class CLCommandQueue extends CLObjectResource {
          || work.dimension >= 2 && work.getGroupSize().get(1) != 0
          || work.dimension == 3 && work.getGroupSize().get(2) != 0) {
             groupSize = work.getGroupSize();
+        }else if(workGroupTuner != null) {
+            groupSize = workGroupTuner.getGroupSize(work.getKernel(), device, work.dimension, work.getWorkSize());
         }
 
         this.putNDRangeKernel(work.getKernel(), work.dimension, work.getWorkOffset(), work.getWorkSize(), groupSize, condition, events);
         return this;
     }
 
+    /**
+     * Replays all commands recorded in the given list with a single native call.
+     */
+    public CLCommandQueue putCommandList(CLCommandList list) {
+        this.putCommandList(list, null, null);
+        return this;
+    }
+
+    /**
+     * Replays all commands recorded in the given list with a single native call.
+     * The last enqueued command of the list creates the event.
+     */
+    public CLCommandQueue putCommandList(CLCommandList list, CLEventList events) {
+        this.putCommandList(list, null, events);
+        return this;
+    }
+
+    /**
+     * Replays all commands recorded in the given list with a single native call.
+     * The first enqueued command of the list waits for the condition, the last one creates the event.
+     * Commands within the list are not chained with events, use recorded barriers for ordering on out-of-order queues.
+     */
+    public CLCommandQueue putCommandList(CLCommandList list, CLEventList condition, CLEventList events) {
+
+        if(list.getContext() != null && list.getContext() != context) {
+            throw new IllegalArgumentException(list + " was recorded for a different context");
+        }
+
+        NativeSizeBuffer conditionIDs = null;
+        int conditions = 0;
+        if(condition != null) {
+            conditionIDs = condition.IDsView;
+            conditions   = condition.size;
+        }
+
+        int ret = cl.clEnqueueCommandList(ID, list.commands, list.length, list.lastEnqueue, list.hostBuffers,
+                conditions, conditionIDs, events==null ? null : events.IDs, pbA);
+
+        list.invalidateArgCaches();
+
+        if(ret != CL_SUCCESS) {
+            throw newException(ret, "can not enqueue command list: " + list
+                    + " failed at word: " + pbA.get(0) + " " + toStr(condition, events));
+        }
+
+        if(events != null && list.lastEnqueue >= 0) {
+            events.createEvent(context);
+        }
+        enqueued(null, 0);
+
+        return this;
+    }
+
     /**
      * Calls {@native clEnqueueAcquireGLObjects}.
      */
@@ -1720,9 +2070,7 @@ public class CLCommandQueue extends CLObjectResource {
             throw newException(ret, "can not aquire " + glObjectIDs + " with " + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
-        }
+        enqueued(events, 0);
 
         return this;
     }
@@ -1789,19 +2137,129 @@ public class CLCommandQueue extends CLObjectResource {
             throw newException(ret, "can not release " + glObjectIDs + "with " + toStr(condition, events));
         }
 
-        if(events != null) {
-            events.createEvent(context);
+        enqueued(events, 0);
+
+        return this;
+    }
+
+    /**
+     * Enqueues a non-blocking {@native clEnqueueWriteBuffer} and returns a future which completes with the written buffer.
+     */
+    public <B extends Buffer> CLCommandFuture<CLBuffer<B>> putWriteBufferAsync(CLBuffer<B> writeBuffer) {
+        return putWriteBufferAsync(writeBuffer, null);
+    }
+
+    /**
+     * Enqueues a non-blocking {@native clEnqueueWriteBuffer} and returns a future which completes with the written buffer.
+     */
+    public <B extends Buffer> CLCommandFuture<CLBuffer<B>> putWriteBufferAsync(CLBuffer<B> writeBuffer, CLEventList condition) {
+        CLEventList events = new CLEventList(1);
+        putWriteBuffer(writeBuffer, false, condition, events);
+        return new CLCommandFuture<CLBuffer<B>>(this, events, writeBuffer).register();
+    }
+
+    /**
+     * Enqueues a non-blocking {@native clEnqueueReadBuffer} and returns a future which completes with the host buffer.
+     */
+    public <B extends Buffer> CLCommandFuture<B> putReadBufferAsync(CLBuffer<B> readBuffer) {
+        return putReadBufferAsync(readBuffer, null);
+    }
+
+    /**
+     * Enqueues a non-blocking {@native clEnqueueReadBuffer} and returns a future which completes with the host buffer.
+     */
+    public <B extends Buffer> CLCommandFuture<B> putReadBufferAsync(CLBuffer<B> readBuffer, CLEventList condition) {
+        CLEventList events = new CLEventList(1);
+        putReadBuffer(readBuffer, false, condition, events);
+        return new CLCommandFuture<B>(this, events, readBuffer.getBuffer()).register();
+    }
+
+    /**
+     * Enqueues {@native clEnqueueCopyBuffer} and returns a future which completes with the destination buffer.
+     */
+    public <B extends Buffer> CLCommandFuture<CLBuffer<B>> putCopyBufferAsync(CLBuffer<?> src, CLBuffer<B> dest, CLEventList condition) {
+        CLEventList events = new CLEventList(1);
+        putCopyBuffer(src, dest, 0, 0, src.getCLSize(), condition, events);
+        return new CLCommandFuture<CLBuffer<B>>(this, events, dest).register();
+    }
+
+    /**
+     * Enqueues {@native clEnqueueNDRangeKernel} and returns a future which completes with the kernel.
+     */
+    public CLCommandFuture<CLKernel> put1DRangeKernelAsync(CLKernel kernel, long globalWorkOffset, long globalWorkSize, long localWorkSize) {
+        return put1DRangeKernelAsync(kernel, globalWorkOffset, globalWorkSize, localWorkSize, null);
+    }
+
+    /**
+     * Enqueues {@native clEnqueueNDRangeKernel} and returns a future which completes with the kernel.
+     */
+    public CLCommandFuture<CLKernel> put1DRangeKernelAsync(CLKernel kernel, long globalWorkOffset, long globalWorkSize, long localWorkSize, CLEventList condition) {
+        CLEventList events = new CLEventList(1);
+        put1DRangeKernel(kernel, globalWorkOffset, globalWorkSize, localWorkSize, condition, events);
+        return new CLCommandFuture<CLKernel>(this, events, kernel).register();
+    }
+
+    /**
+     * Enqueues {@native clEnqueueNDRangeKernel} and returns a future which completes with the kernel.
+     */
+    public CLCommandFuture<CLKernel> putNDRangeKernelAsync(CLKernel kernel, int workDimension, NativeSizeBuffer globalWorkOffset,
+            NativeSizeBuffer globalWorkSize, NativeSizeBuffer localWorkSize, CLEventList condition) {
+        CLEventList events = new CLEventList(1);
+        putNDRangeKernel(kernel, workDimension, globalWorkOffset, globalWorkSize, localWorkSize, condition, events);
+        return new CLCommandFuture<CLKernel>(this, events, kernel).register();
+    }
+
+    /**
+     * Enqueues {@native clEnqueueNDRangeKernel} and returns a future which completes with the work.
+     */
+    public CLCommandFuture<CLWork> putWorkAsync(CLWork work, CLEventList condition) {
+        CLEventList events = new CLEventList(1);
+        putWork(work, condition, events);
+        return new CLCommandFuture<CLWork>(this, events, work).register();
+    }
+
+    /**
+     * Enables sampling of one of <code>rate</code> commands enqueued without an explicit event list.
+     * Timestamps of the last <code>capacity</code> samples are kept by the returned profiler.
+     * Requires a queue created with {@link Mode#PROFILING_MODE}.
+     */
+    public CLSamplingProfiler enableSampling(int rate, int capacity) {
+        if(!isProfilingEnabled()) {
+            throw new IllegalStateException("sampling requires a queue created with "+Mode.PROFILING_MODE);
         }
+        disableSampling();
+        profiler = new CLSamplingProfiler(this, rate, capacity);
+        return profiler;
+    }
 
+    /**
+     * Disables sampling and releases all events of not yet completed samples.
+     */
+    public CLCommandQueue disableSampling() {
+        if(profiler != null) {
+            profiler.release();
+            profiler = null;
+        }
         return this;
     }
 
+    /**
+     * Returns the sampling profiler or null if sampling is disabled.
+     * @see #enableSampling(int, int)
+     */
+    public CLSamplingProfiler getSamplingProfiler() {
+        return profiler;
+    }
+
     /**
      * Calls {@native clFinish}.
      */
     public CLCommandQueue finish() {
         int ret = cl.clFinish(ID);
         checkForError(ret, "can not finish command queue");
+        if(flushPolicy != null) {
+            flushPolicy.flushed();
+        }
         return this;
     }
 
@@ -1811,9 +2269,75 @@ public class CLCommandQueue extends CLObjectResource {
     public CLCommandQueue flush() {
         int ret = cl.clFlush(ID);
         checkForError(ret, "can not flush command queue");
+        if(flushPolicy != null) {
+            flushPolicy.flushed();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the policy which flushes this queue automatically or null to disable auto flushing.
+     * A policy can only be used by one queue at a time.
+     * Time limited policies flush from a timer thread, {@native clFlush} is threadsafe.
+     */
+    public CLCommandQueue setFlushPolicy(CLFlushPolicy policy) {
+        if(policy != null && policy.queue != null && policy.queue != this) {
+            throw new IllegalArgumentException(policy+" is already used by "+policy.queue);
+        }
+        if(flushPolicy != null) {
+            flushPolicy.setQueue(null);
+        }
+        if(policy != null) {
+            policy.setQueue(this);
+        }
+        this.flushPolicy = policy;
         return this;
     }
 
+    /**
+     * Returns the flush policy or null if auto flushing is disabled.
+     */
+    public CLFlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * Routes whole buffer writes and blocking whole buffer reads of accepted sizes through the given
+     * pool of pinned staging buffers. Setting null disables staging.
+     * @see CLStagingPool
+     */
+    public CLCommandQueue setStagingPool(CLStagingPool pool) {
+        if(pool != null && pool.getQueue() != this) {
+            throw new IllegalArgumentException(pool+" belongs to a different queue");
+        }
+        this.stagingPool = pool;
+        return this;
+    }
+
+    /**
+     * Returns the staging pool or null if staging is disabled.
+     */
+    public CLStagingPool getStagingPool() {
+        return stagingPool;
+    }
+
+    /**
+     * Applies the local sizes tuned by the given tuner to {@link #putWork} calls without group size.
+     * Setting null disables the lookup.
+     * @see CLWorkGroupTuner
+     */
+    public CLCommandQueue setWorkGroupTuner(CLWorkGroupTuner tuner) {
+        this.workGroupTuner = tuner;
+        return this;
+    }
+
+    /**
+     * Returns the work group tuner or null if none is set.
+     */
+    public CLWorkGroupTuner getWorkGroupTuner() {
+        return workGroupTuner;
+    }
+
     /**
      * Returns true only when {@link Mode#PROFILING_MODE} has been enabled.
      */
@@ -1831,6 +2355,8 @@ public class CLCommandQueue extends CLObjectResource {
     @Override
     public synchronized void release() {
         super.release();
+        disableSampling();
+        setFlushPolicy(null); // stops the timer before the queue id becomes invalid
         int ret = cl.clReleaseCommandQueue(ID);
         context.onCommandQueueReleased(device, this);
         if(ret != CL_SUCCESS) {
@@ -1838,6 +2364,54 @@ public class CLCommandQueue extends CLObjectResource {
         }
     }
 
+    /**
+     * Returns the id buffer for the event of the next command, the sampling buffer or null.
+     */
+    private NativeSizeBuffer eventIDs(CLEventList events) {
+        if(events != null) {
+            return events.IDs;
+        }
+        return profiler == null ? null : profiler.sample();
+    }
+
+    private void createEvent(CLEventList events, CommandType type, String name, long bytes) {
+        if(events == null && profiler != null) {
+            profiler.sampled(type, name, bytes);
+        }
+        enqueued(events, bytes);
+    }
+
+    /**
+     * Creates the event if requested and applies the flush policy.
+     */
+    private void enqueued(CLEventList events, long bytes) {
+        if(events != null) {
+            events.createEvent(context);
+        }
+        if(flushPolicy != null && flushPolicy.enqueued(bytes)) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the size of the image region in bytes, 0 if the flush policy does not count bytes.
+     */
+    private long imageBytes(CLImage<?> image, int rangeX, int rangeY, int rangeZ) {
+        if(flushPolicy == null || flushPolicy.getMaxBytes() == 0) {
+            return 0; // avoids the element size query
+        }
+        return (long)rangeX*rangeY*rangeZ*image.getElementSize();
+    }
+
+    private static void checkRange(CLBuffer<?> buffer, long offset, long bytes) {
+        if(offset < 0 || bytes < 0 || offset+bytes > buffer.getNIOSize()) {
+            throw new IndexOutOfBoundsException("range ["+offset+", "+(offset+bytes)+") exceeds host buffer size "+buffer.getNIOSize()+" of "+buffer);
+        }
+        if(offset % buffer.getElementSize() != 0) {
+            throw new IllegalArgumentException("offset "+offset+" is not a multiple of the element size "+buffer.getElementSize());
+        }
+    }
+
     private static NativeSizeBuffer copy2NIO(NativeSizeBuffer buffer, long a) {
         return buffer.put(2, a).position(2);
     }
@@ -41,19 +41,27 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import static java.lang.System.*;
 import static com.jogamp.opencl.CLException.*;
 import static com.jogamp.common.nio.Buffers.*;
@@ -94,6 +102,11 @@ public class CLContext extends CLObjectResource {
     
     private final ErrorDispatcher errorHandler;
 
+    private CLEventReactor eventReactor;
+
+    // shared programs by normalized source, options and devices
+    private final Map<String, SharedProgram> sharedPrograms;
+
     protected CLContext(CLPlatform platform, long contextID, ErrorDispatcher dispatcher) {
         super(contextID);
         this.platform = platform;
@@ -103,6 +116,7 @@ public class CLContext extends CLObjectResource {
         this.memoryObjects = synchronizedSet(new HashSet<CLMemory<? extends Buffer>>());
         
         this.queuesMap = new HashMap<CLDevice, List<CLCommandQueue>>();
+        this.sharedPrograms = new HashMap<String, SharedProgram>();
         
         this.errorHandler = dispatcher;
 
@@ -312,6 +326,142 @@ public class CLContext extends CLObjectResource {
         return program;
     }
 
+    /**
+     * Returns a built program which is shared with all other callers requesting the same source, options and devices.
+     * Sources are compared after normalizing line endings, options after normalizing whitespace outside of quotes.
+     * Concurrent requests for a program which is not built yet wait on a single build.
+     * <p>
+     * Shared programs are reference counted: every caller releases the program once when done,
+     * the program is released with the last reference. Shared programs must not be rebuilt.
+     * </p>
+     * @param devices A list of devices the program should be build on or null for all devices of this context.
+     * @throws CLException if the build failed, failed builds are not shared.
+     */
+    public CLProgram getSharedProgram(final String source, final String options, final CLDevice... devices) {
+
+        String key = sharedProgramKey(source, options, devices);
+
+        SharedProgram shared;
+        boolean owner = false;
+        synchronized(sharedPrograms) {
+            shared = sharedPrograms.get(key);
+            if(shared == null) {
+                shared = new SharedProgram(new Callable<CLProgram>() {
+                    @Override
+                    public CLProgram call() {
+                        CLProgram program = createProgram(source);
+                        try{
+                            return program.build(options, devices);
+                        }catch(CLException ex) {
+                            program.release();
+                            throw ex;
+                        }
+                    }
+                });
+                sharedPrograms.put(key, shared);
+                owner = true;
+            }
+            shared.references++;
+        }
+
+        if(owner) {
+            shared.build.run();
+        }
+
+        boolean interrupted = false;
+        try{
+            while(true) {
+                try{
+                    CLProgram program = shared.build.get();
+                    synchronized(sharedPrograms) {
+                        shared.program = program;
+                        program.sharedKey = key;
+                    }
+                    return program;
+                }catch(InterruptedException ex) {
+                    // the build is running anyway, don't leave a reference behind
+                    interrupted = true;
+                }
+            }
+        }catch(ExecutionException ex) {
+            synchronized(sharedPrograms) {
+                if(--shared.references == 0 && sharedPrograms.get(key) == shared) {
+                    sharedPrograms.remove(key);
+                }
+            }
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CLException(cause.toString());
+        }finally{
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private String sharedProgramKey(String source, String options, CLDevice[] devices) {
+
+        StringBuilder sb = new StringBuilder(source.length()+64);
+
+        if(options != null) {
+            // whitespace between options is insignificant, inside quotes it is not
+            boolean quoted = false;
+            boolean space = false;
+            for (int i = 0; i < options.length(); i++) {
+                char c = options.charAt(i);
+                if(!quoted && Character.isWhitespace(c)) {
+                    space = true;
+                    continue;
+                }
+                if(space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                space = false;
+                if(c == '"') {
+                    quoted = !quoted;
+                }
+                sb.append(c);
+            }
+        }
+        sb.append('\0');
+
+        if(devices == null || devices.length == 0) {
+            devices = getDevices();
+        }
+        long[] ids = new long[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            ids[i] = devices[i].ID;
+        }
+        Arrays.sort(ids);
+        sb.append(Arrays.toString(ids)).append('\0');
+
+        // line endings don't change the program, everything else might (e.g. line continuations)
+        sb.append(source.replace("\r\n", "\n").replace('\r', '\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Drops one reference of the shared program, returns true if the program should be released.
+     */
+    boolean releaseSharedProgram(CLProgram program) {
+        synchronized(sharedPrograms) {
+            SharedProgram shared = sharedPrograms.get(program.sharedKey);
+            if(shared == null || shared.program != program) {
+                // no longer shared, e.g. the context is being released
+                return true;
+            }
+            if(--shared.references > 0) {
+                return false;
+            }
+            sharedPrograms.remove(program.sharedKey);
+            return true;
+        }
+    }
+
     /**
      * Creates a CLBuffer with the specified flags and element count. No flags creates a MEM.READ_WRITE buffer.
      */
@@ -393,6 +543,50 @@ public class CLContext extends CLObjectResource {
         return buffer;
     }
 
+    /**
+     * Creates a CLBuffer backed by the memory mapped file region [position, position+size).
+     * The region is mapped with {@link FileChannel#map} and used as storage of the buffer
+     * via {@link Mem#USE_BUFFER}, devices sharing host memory read the page cache without copies.
+     * The region is mapped read only if the buffer is created with {@link Mem#READ_ONLY},
+     * otherwise the channel must be opened for reading and writing.
+     * @throws IOException when the region could not be mapped.
+     */
+    public final CLBuffer<ByteBuffer> createBuffer(FileChannel channel, long position, int size, Mem... flags) throws IOException {
+        int config = Mem.flagsToInt(flags) | Mem.USE_BUFFER.CONFIG;
+        if((config & (Mem.ALLOCATE_BUFFER.CONFIG | Mem.COPY_BUFFER.CONFIG)) != 0) {
+            throw new IllegalArgumentException("file backed buffers can not be combined with ALLOCATE_BUFFER or COPY_BUFFER");
+        }
+        MapMode mode = (config & Mem.READ_ONLY.CONFIG) != 0 ? MapMode.READ_ONLY : MapMode.READ_WRITE;
+        MappedByteBuffer mapped = channel.map(mode, position, size);
+        mapped.order(ByteOrder.nativeOrder());
+        return createBuffer((ByteBuffer)mapped, config);
+    }
+
+    /**
+     * Maps the complete file in windows of <code>windowSize</code> bytes and creates one file backed CLBuffer per window.
+     * The last window may be smaller. Window sizes which are a multiple of the page size keep every window page aligned.
+     * @see #createBuffer(FileChannel, long, int, Mem[])
+     * @throws IOException when the file could not be mapped.
+     */
+    public final List<CLBuffer<ByteBuffer>> createBuffers(FileChannel channel, int windowSize, Mem... flags) throws IOException {
+        if(windowSize <= 0) {
+            throw new IllegalArgumentException("window size must be positive but was "+windowSize);
+        }
+        long size = channel.size();
+        List<CLBuffer<ByteBuffer>> windows = new ArrayList<CLBuffer<ByteBuffer>>((int)((size+windowSize-1)/windowSize));
+        try{
+            for (long position = 0; position < size; position += windowSize) {
+                windows.add(createBuffer(channel, position, (int)Math.min(windowSize, size-position), flags));
+            }
+        }catch(IOException ex) {
+            for (CLBuffer<ByteBuffer> window : windows) {
+                window.release();
+            }
+            throw ex;
+        }
+        return windows;
+    }
+
     /**
      * Creates a CLImage2d with the specified format, dimension and flags.
      */
@@ -537,6 +731,11 @@ public class CLContext extends CLObjectResource {
         super.release();
 
         try{
+            // shared programs are released regardless of their reference count
+            synchronized(sharedPrograms) {
+                sharedPrograms.clear();
+            }
+
             //release all resources
             release(programs);
             release(memoryObjects);
@@ -546,6 +745,10 @@ public class CLContext extends CLObjectResource {
                 release(queues);
             }
 
+            if(eventReactor != null) {
+                eventReactor.release();
+            }
+
         }finally{
             int ret = platform.getContextBinding().clReleaseContext(ID);
             checkForError(ret, "error releasing context");
@@ -553,6 +756,17 @@ public class CLContext extends CLObjectResource {
 
     }
 
+    /**
+     * Returns the completion reactor of this context which dispatches event completions
+     * in batches off the driver threads. The reactor is created on first use.
+     */
+    public synchronized CLEventReactor getEventReactor() {
+        if(eventReactor == null) {
+            eventReactor = new CLEventReactor(this);
+        }
+        return eventReactor;
+    }
+
     protected void overrideContext(CLDevice device) {
         device.setContext(this);
     }
@@ -780,4 +994,16 @@ public class CLContext extends CLObjectResource {
     }
 
 
+    private static final class SharedProgram {
+
+        private final FutureTask<CLProgram> build;
+        private CLProgram program;
+        private int references;
+
+        private SharedProgram(Callable<CLProgram> builder) {
+            this.build = new FutureTask<CLProgram>(builder);
+        }
+
+    }
+
 }
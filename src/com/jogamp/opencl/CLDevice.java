@@ -60,6 +60,7 @@ import static com.jogamp.opencl.llb.CL.*;
 public class CLDevice extends CLObject {
 
     private Set<String> extensions;
+    private volatile CLDeviceSnapshot snapshot;
 
     private final CLInfoAccessor deviceInfo;
     private final CLPlatform platform;
@@ -826,6 +827,18 @@ public class CLDevice extends CLObject {
         return extensions;
     }
 
+    /**
+     * Returns an immutable snapshot of the static properties of this device.
+     * The snapshot is taken on first use and reused afterwards, its getters do not call into OpenCL.
+     */
+    public CLDeviceSnapshot snapshot() {
+        CLDeviceSnapshot s = snapshot;
+        if(s == null) {
+            s = snapshot = new CLDeviceSnapshot(this);
+        }
+        return s;
+    }
+
     /**
      * Returns a Map of device properties with the enum names as keys.
      * @see CLUtil#obtainDeviceProperties(com.jogamp.opencl.CLDevice)
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.opencl.CLDevice.LocalMemType;
+import com.jogamp.opencl.CLDevice.Type;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the static properties of a {@link CLDevice}.
+ * All values are read once when the snapshot is taken, getters do not call into OpenCL.
+ * @see CLDevice#snapshot()
+ * @author Michael Bien
+ */
+public final class CLDeviceSnapshot {
+
+    private final CLDevice device;
+
+    private final String name;
+    private final String vendor;
+    private final long vendorID;
+    private final CLVersion version;
+    private final String driverVersion;
+    private final Type type;
+
+    private final int addressBits;
+    private final int maxComputeUnits;
+    private final int maxClockFrequency;
+    private final int maxWorkGroupSize;
+    private final int[] maxWorkItemSizes;
+    private final int preferredFloatVectorWidth;
+
+    private final long maxMemAllocSize;
+    private final long globalMemSize;
+    private final long localMemSize;
+    private final LocalMemType localMemType;
+    private final long maxConstantBufferSize;
+    private final boolean memoryUnified;
+
+    private final boolean imageSupport;
+    private final boolean littleEndian;
+    private final Set<CLCommandQueue.Mode> queueProperties;
+    private final Set<String> extensions;
+
+    CLDeviceSnapshot(CLDevice device) {
+        this.device = device;
+
+        this.name = device.getName();
+        this.vendor = device.getVendor();
+        this.vendorID = device.getVendorID();
+        this.version = device.getVersion();
+        this.driverVersion = device.getDriverVersion();
+        this.type = device.getType();
+
+        this.addressBits = device.getAddressBits();
+        this.maxComputeUnits = device.getMaxComputeUnits();
+        this.maxClockFrequency = device.getMaxClockFrequency();
+        this.maxWorkGroupSize = device.getMaxWorkGroupSize();
+        this.maxWorkItemSizes = device.getMaxWorkItemSizes();
+        this.preferredFloatVectorWidth = device.getPreferredFloatVectorWidth();
+
+        this.maxMemAllocSize = device.getMaxMemAllocSize();
+        this.globalMemSize = device.getGlobalMemSize();
+        this.localMemSize = device.getLocalMemSize();
+        this.localMemType = device.getLocalMemType();
+        this.maxConstantBufferSize = device.getMaxConstantBufferSize();
+        this.memoryUnified = version.isAtLeast(1, 1) && device.isMemoryUnified();
+
+        this.imageSupport = device.isImageSupportAvailable();
+        this.littleEndian = device.isLittleEndian();
+        this.queueProperties = Collections.unmodifiableSet(EnumSet.copyOf(device.getQueueProperties()));
+        this.extensions = device.getExtensions(); // already unmodifiable
+    }
+
+    /**
+     * Returns the device this snapshot was taken from.
+     */
+    public CLDevice getDevice() {
+        return device;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVendor() {
+        return vendor;
+    }
+
+    public long getVendorID() {
+        return vendorID;
+    }
+
+    public CLVersion getVersion() {
+        return version;
+    }
+
+    public String getDriverVersion() {
+        return driverVersion;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getAddressBits() {
+        return addressBits;
+    }
+
+    public int getMaxComputeUnits() {
+        return maxComputeUnits;
+    }
+
+    public int getMaxClockFrequency() {
+        return maxClockFrequency;
+    }
+
+    public int getMaxWorkGroupSize() {
+        return maxWorkGroupSize;
+    }
+
+    public int getMaxWorkItemDimensions() {
+        return maxWorkItemSizes.length;
+    }
+
+    /**
+     * Returns the maximum work item size of the given dimension.
+     */
+    public int getMaxWorkItemSize(int dimension) {
+        return maxWorkItemSizes[dimension];
+    }
+
+    /**
+     * Returns a copy of the maximum work item sizes.
+     */
+    public int[] getMaxWorkItemSizes() {
+        return maxWorkItemSizes.clone();
+    }
+
+    public int getPreferredFloatVectorWidth() {
+        return preferredFloatVectorWidth;
+    }
+
+    public long getMaxMemAllocSize() {
+        return maxMemAllocSize;
+    }
+
+    public long getGlobalMemSize() {
+        return globalMemSize;
+    }
+
+    public long getLocalMemSize() {
+        return localMemSize;
+    }
+
+    public LocalMemType getLocalMemType() {
+        return localMemType;
+    }
+
+    public long getMaxConstantBufferSize() {
+        return maxConstantBufferSize;
+    }
+
+    /**
+     * Returns true if the device and the host have a unified memory subsystem, always false for OpenCL 1.0 devices.
+     */
+    public boolean isMemoryUnified() {
+        return memoryUnified;
+    }
+
+    public boolean isImageSupportAvailable() {
+        return imageSupport;
+    }
+
+    public ByteOrder getByteOrder() {
+        return littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+    }
+
+    public Set<CLCommandQueue.Mode> getQueueProperties() {
+        return queueProperties;
+    }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    public boolean isExtensionAvailable(String extension) {
+        return extensions.contains(extension);
+    }
+
+    public boolean isDoubleFPAvailable() {
+        return extensions.contains("cl_khr_fp64");
+    }
+
+    public boolean isGLMemorySharingSupported() {
+        return extensions.contains("cl_khr_gl_sharing") || extensions.contains("cl_APPLE_gl_sharing");
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [name: " + name
+                                         + " type: " + type
+                                         + " compute units: " + maxComputeUnits
+                                         + " global mem: " + globalMemSize+"]";
+    }
+
+}
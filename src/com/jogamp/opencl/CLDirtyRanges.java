@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+/**
+ * Sorted set of coalesced byte ranges which have been modified on the host.
+ * Ranges which are closer than the merge distance are merged into one range
+ * to trade a few redundant bytes for fewer transfers.
+ * @author Michael Bien
+ */
+final class CLDirtyRanges {
+
+    private final long mergeDistance;
+
+    // [start, end) pairs, sorted and non overlapping
+    private long[] ranges;
+    private int size;
+
+    CLDirtyRanges(long mergeDistance) {
+        if(mergeDistance < 0) {
+            throw new IllegalArgumentException("merge distance must not be negative but was "+mergeDistance);
+        }
+        this.mergeDistance = mergeDistance;
+        this.ranges = new long[16];
+    }
+
+    /**
+     * Marks the range [offset, offset+length) as modified.
+     */
+    void add(long offset, long length) {
+        if(length <= 0) {
+            return;
+        }
+        long start = offset;
+        long end = offset+length;
+
+        // first range which ends at or after start - mergeDistance
+        int first = 0;
+        while(first < size && ranges[2*first+1] + mergeDistance < start) {
+            first++;
+        }
+        // ranges [first, last) overlap or touch the new range
+        int last = first;
+        while(last < size && ranges[2*last] <= end + mergeDistance) {
+            start = Math.min(start, ranges[2*last]);
+            end   = Math.max(end,   ranges[2*last+1]);
+            last++;
+        }
+
+        int removed = last - first;
+        if(removed == 0) {
+            if(2*(size+1) > ranges.length) {
+                long[] grown = new long[ranges.length*2];
+                System.arraycopy(ranges, 0, grown, 0, 2*size);
+                ranges = grown;
+            }
+            System.arraycopy(ranges, 2*first, ranges, 2*first+2, 2*(size-first));
+            size++;
+        }else if(removed > 1) {
+            System.arraycopy(ranges, 2*last, ranges, 2*first+2, 2*(size-last));
+            size -= removed-1;
+        }
+        ranges[2*first]   = start;
+        ranges[2*first+1] = end;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of coalesced ranges.
+     */
+    int size() {
+        return size;
+    }
+
+    long getOffset(int range) {
+        return ranges[2*range];
+    }
+
+    long getLength(int range) {
+        return ranges[2*range+1] - ranges[2*range];
+    }
+
+    /**
+     * Returns the sum of all range lengths in bytes.
+     */
+    long getBytes() {
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            bytes += getLength(i);
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append(" [");
+        for (int i = 0; i < size; i++) {
+            if(i > 0) {
+                sb.append(", ");
+            }
+            sb.append('[').append(ranges[2*i]).append(", ").append(ranges[2*i+1]).append(')');
+        }
+        return sb.append(']').toString();
+    }
+
+}
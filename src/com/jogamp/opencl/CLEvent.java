@@ -47,15 +47,28 @@ import static com.jogamp.opencl.CLException.*;
  */
 public class CLEvent extends CLObjectResource {
 
-    private final CLEventInfoAccessor eventInfo;
-    private final CLEventProfilingInfoAccessor eventProfilingInfo;
+    // created on first use, most events are only used for synchronization
+    private CLEventInfoAccessor eventInfo;
+    private CLEventProfilingInfoAccessor eventProfilingInfo;
     private final CLEventBinding binding;
 
     protected CLEvent(CLContext context, long id) {
         super(context, id);
         binding = context.getPlatform().getEventBinding();
-        this.eventInfo = new CLEventInfoAccessor();
-        this.eventProfilingInfo = new CLEventProfilingInfoAccessor();
+    }
+
+    private CLEventInfoAccessor getEventInfo() {
+        if(eventInfo == null) {
+            eventInfo = new CLEventInfoAccessor();
+        }
+        return eventInfo;
+    }
+
+    private CLEventProfilingInfoAccessor getEventProfilingInfo() {
+        if(eventProfilingInfo == null) {
+            eventProfilingInfo = new CLEventProfilingInfoAccessor();
+        }
+        return eventProfilingInfo;
     }
 
     /**
@@ -96,16 +109,16 @@ public class CLEvent extends CLObjectResource {
     }
     
     public int getStatusCode() {
-        return (int)eventInfo.getLong(CL_EVENT_COMMAND_EXECUTION_STATUS);
+        return (int)getEventInfo().getLong(CL_EVENT_COMMAND_EXECUTION_STATUS);
     }
 
     public CommandType getType() {
-        int status = (int)eventInfo.getLong(CL_EVENT_COMMAND_TYPE);
+        int status = (int)getEventInfo().getLong(CL_EVENT_COMMAND_TYPE);
         return CommandType.valueOf(status);
     }
 
     public long getProfilingInfo(ProfilingCommand command) {
-        return eventProfilingInfo.getLong(command.COMMAND);
+        return getEventProfilingInfo().getLong(command.COMMAND);
     }
 
 
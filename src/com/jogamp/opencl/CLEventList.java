@@ -35,6 +35,11 @@ import java.util.Iterator;
 
 /**
  * Fixed size list for storing CLEvents.
+ * <p>
+ * A list created with {@link #createRing(int)} never fills up. Once all slots are in use,
+ * the oldest event is released and its slot is recycled for the next event. Ring lists only keep the
+ * native event ids, {@link CLEvent} objects are created on demand when accessed.
+ * </p>
  * @author Michael Bien
  */
 public final class CLEventList implements CLResource, AutoCloseable, Iterable<CLEvent> {
@@ -52,6 +57,12 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
     final NativeSizeBuffer IDsView;
     
     int size;
+
+    /**
+     * ring mode only: the ids of the live events per slot and the context of the events.
+     */
+    private final long[] ringIDs;
+    private CLContext context;
     
     public CLEventList(int capacity) {
         this(null, capacity);
@@ -62,13 +73,30 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
     }
 
     public CLEventList(CachedBufferFactory factory, int capacity) {
+        this(factory, capacity, false);
+    }
+
+    private CLEventList(CachedBufferFactory factory, int capacity, boolean ring) {
         this.events = new CLEvent[capacity];
         this.IDs = initIDBuffer(factory, capacity);
         this.IDsView = NativeSizeBuffer.wrap(IDs.getBuffer().duplicate());
+        this.ringIDs = ring ? new long[capacity] : null;
+    }
+
+    /**
+     * Creates a ring mode list which recycles its oldest slot when full.
+     * Events of a ring list are owned by the list and must not be released individually.
+     */
+    public static CLEventList createRing(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1 but was "+capacity);
+        }
+        return new CLEventList(null, capacity, true);
     }
 
     public CLEventList(CachedBufferFactory factory, CLEvent... events) {
         this.events = events;
+        this.ringIDs = null;
         this.IDs = initIDBuffer(factory, events.length);
         this.IDsView = NativeSizeBuffer.wrap(IDs.getBuffer().duplicate());
         
@@ -92,6 +120,11 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
 
     void createEvent(CLContext context) {
 
+        if(ringIDs != null) {
+            recycle(context);
+            return;
+        }
+
         if(events[size] != null)
             events[size].release();
 
@@ -99,6 +132,45 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
         size++;
     }
     
+    private void recycle(CLContext context) {
+
+        int slot = IDs.position();
+        long id = IDs.get();
+        if(IDs.position() == ringIDs.length) {
+            IDs.rewind();
+        }
+
+        long old = ringIDs[slot];
+        ringIDs[slot] = id;
+        events[slot] = null;
+        this.context = context;
+
+        if(size < ringIDs.length) {
+            size++;
+        }else{
+            int ret = context.getPlatform().getEventBinding().clReleaseEvent(old);
+            CLException.checkForError(ret, "can not release event");
+        }
+    }
+
+    /**
+     * Returns the slot of the event with the given index, events are ordered from oldest to newest.
+     */
+    private int slot(int index) {
+        if(ringIDs == null) {
+            return index;
+        }
+        int head = IDs.position(); // next slot to be written
+        return (head - size + index + ringIDs.length) % ringIDs.length;
+    }
+
+    /**
+     * Returns true if this list has been created in ring mode.
+     */
+    public boolean isRing() {
+        return ringIDs != null;
+    }
+
     NativeSizeBuffer getEventBuffer(int index) {
         return NativeSizeBuffer.wrap(IDs.getBuffer().duplicate()).position(index);
     }
@@ -109,7 +181,7 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
      */
     public void waitForEvents() {
         if(size > 0) {
-            events[0].getPlatform().getEventBinding().clWaitForEvents(size, IDsView);
+            getEvent(0).getPlatform().getEventBinding().clWaitForEvents(size, IDsView);
         }
     }
 
@@ -122,6 +194,13 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
             throw new IndexOutOfBoundsException("args: [start: "+start+" range: "+range+"], eventcount: "+size);
         }
 
+        if(ringIDs != null) {
+            for (int i = start; i < start+range; i++) {
+                waitForEvent(i);
+            }
+            return;
+        }
+
         NativeSizeBuffer view = getEventBuffer(start);
         getEvent(start).getPlatform().getEventBinding().clWaitForEvents(range, view);
     }
@@ -130,7 +209,7 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
      * Waits for the event with the given index in this list to occur.
      */
     public void waitForEvent(int index) {
-        NativeSizeBuffer view = getEventBuffer(index);
+        NativeSizeBuffer view = getEventBuffer(slot(index));
         getEvent(index).getPlatform().getEventBinding().clWaitForEvents(1, view);
     }
 
@@ -139,6 +218,17 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
      */
     @Override
     public void release() {
+        if(ringIDs != null) {
+            for (int i = 0; i < size; i++) {
+                int ret = context.getPlatform().getEventBinding().clReleaseEvent(ringIDs[i]);
+                CLException.checkForError(ret, "can not release event");
+                ringIDs[i] = 0;
+                events[i] = null;
+            }
+            size = 0;
+            IDs.rewind();
+            return;
+        }
         for (int i = 0; i < size; i++) {
             events[i].release();
             events[i] = null;
@@ -159,7 +249,11 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
     public CLEvent getEvent(int index) {
         if(index >= size)
             throw new IndexOutOfBoundsException("list contains "+size+" events, can not return event with index "+index);
-        return events[index];
+        int slot = slot(index);
+        if(events[slot] == null) {
+            events[slot] = new CLEvent(context, ringIDs[slot]);
+        }
+        return events[slot];
     }
 
     /**
@@ -182,7 +276,7 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
 
     @Override
     public Iterator<CLEvent> iterator() {
-        return new EventIterator(events, size);
+        return new EventIterator(this);
     }
 
     @Override
@@ -190,7 +284,7 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
         StringBuilder sb = new StringBuilder();
         sb.append(getClass().getName()).append('[');
         for (int i = 0; i < size; i++) {
-            sb.append(events[i].toString());
+            sb.append(getEvent(i).toString());
             if(i+1 != size) {
                 sb.append(", ");
             }
@@ -200,13 +294,13 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
 
     private static class EventIterator implements Iterator<CLEvent> {
 
-        private final CLEvent[] events;
+        private final CLEventList list;
         private final int size;
         private int index;
 
-        private EventIterator(CLEvent[] events, int size) {
-            this.events = events;
-            this.size = size;
+        private EventIterator(CLEventList list) {
+            this.list = list;
+            this.size = list.size;
         }
 
         @Override
@@ -217,7 +311,7 @@ public final class CLEventList implements CLResource, AutoCloseable, Iterable<CL
         @Override
         public CLEvent next() {
             if(hasNext())
-                return events[index++];
+                return list.getEvent(index++);
             else
                 return null;
         }
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.opencl.CLEvent.ExecutionStatus;
+import com.jogamp.opencl.llb.CLEventBinding;
+import com.jogamp.opencl.llb.impl.CLEventCallback;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.jogamp.opencl.CLException.*;
+import static com.jogamp.opencl.llb.CL.*;
+
+/**
+ * Dispatches event completions of one {@link CLContext} to {@link CLEventListener}s.
+ * <p>
+ * All events share one native callback object. The driver thread invoking the callback only
+ * queues the completion and schedules a dispatch if none is pending. Completions which
+ * accumulated until the dispatch runs are delivered in one batch on the configured {@link Executor}.
+ * Listeners therefore never run on driver threads. An exception thrown by a listener is passed to the
+ * uncaught exception handler of the dispatching thread and does not affect other listeners.
+ * </p>
+ * @see CLContext#getEventReactor()
+ * @author Michael Bien
+ */
+public class CLEventReactor {
+
+    private final CLContext context;
+    private final CLEventBinding binding;
+
+    // reused for all registrations, the native reference is deleted once released and no event is pending
+    private final CLEventCallback callback;
+    private long callbackRef;
+    private final Runnable dispatcher;
+
+    private final Map<Long, Registration> pending;
+    private final ConcurrentLinkedQueue<Completion> completions;
+    private final AtomicBoolean scheduled;
+
+    private volatile Executor executor;
+    private ExecutorService defaultExecutor;
+    private volatile boolean released;
+
+    private final AtomicLong completed;
+    private final AtomicLong batches;
+
+    CLEventReactor(CLContext context) {
+        this.context = context;
+        this.binding = context.getPlatform().getEventBinding();
+        this.pending = new HashMap<Long, Registration>();
+        this.completions = new ConcurrentLinkedQueue<Completion>();
+        this.scheduled = new AtomicBoolean();
+        this.completed = new AtomicLong();
+        this.batches = new AtomicLong();
+
+        this.callback = new CLEventCallback() {
+            @Override public void eventStateChanged(long event, int status) {
+                if(released) {
+                    remove(event);
+                    return;
+                }
+                completions.add(new Completion(event, status));
+                if(scheduled.compareAndSet(false, true)) {
+                    try{
+                        executor.execute(dispatcher);
+                    }catch(RejectedExecutionException ex) {
+                        // dispatched with the next completion unless the reactor has been released
+                        scheduled.set(false);
+                        if(released) {
+                            Completion completion;
+                            while((completion = completions.poll()) != null) {
+                                remove(completion.event);
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        this.dispatcher = new Runnable() {
+            @Override public void run() {
+                dispatch();
+            }
+        };
+
+        this.defaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CLEventReactor-"+CLEventReactor.this.context.ID);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor = defaultExecutor;
+        this.callbackRef = binding.clNewEventCallbackRef(callback);
+    }
+
+    /**
+     * Sets the executor running the listeners. The default executor uses a single daemon thread.
+     */
+    public synchronized CLEventReactor setExecutor(Executor executor) {
+        if(executor == null) {
+            throw new IllegalArgumentException("executor was null");
+        }
+        this.executor = executor;
+        if(defaultExecutor != null && executor != defaultExecutor) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Calls the listener once the event completed or terminated with an error.
+     */
+    public void register(CLEvent event, CLEventListener listener) {
+        if(event.getContext() != context) {
+            throw new IllegalArgumentException(event+" does not belong to "+context);
+        }
+        long ref;
+        synchronized(pending) {
+            if(released) {
+                throw new IllegalStateException(this+" has been released");
+            }
+            Registration registration = pending.get(event.ID);
+            if(registration != null) {
+                registration.add(listener);
+                return;
+            }
+            pending.put(event.ID, new Registration(event, listener));
+            ref = callbackRef; // stays valid while the event is pending
+        }
+        int ret = binding.clSetEventCallbackRef(event.ID, ExecutionStatus.COMPLETE.STATUS, ref);
+        if(ret != CL_SUCCESS) {
+            remove(event.ID);
+            throw newException(ret, "can not register callback for "+event);
+        }
+    }
+
+    /**
+     * Calls the listener for every event of the list.
+     */
+    public void register(CLEventList events, CLEventListener listener) {
+        for (int i = 0; i < events.size(); i++) {
+            register(events.getEvent(i), listener);
+        }
+    }
+
+    private void dispatch() {
+        scheduled.set(false);
+        int count = 0;
+        Completion completion;
+        while((completion = completions.poll()) != null) {
+            if(count++ == 0) {
+                batches.incrementAndGet();
+            }
+            Registration registration = remove(completion.event);
+            completed.incrementAndGet();
+            if(registration != null) {
+                registration.fire(completion.status);
+            }
+        }
+    }
+
+    private Registration remove(long event) {
+        synchronized(pending) {
+            Registration registration = pending.remove(event);
+            if(released && pending.isEmpty() && callbackRef != 0) {
+                binding.clDeleteEventCallbackRef(callbackRef);
+                callbackRef = 0;
+            }
+            return registration;
+        }
+    }
+
+    /**
+     * Returns the number of events waiting for completion.
+     */
+    public int getPendingCount() {
+        synchronized(pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Returns the number of dispatched completions.
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of batches the completions were dispatched in.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public CLContext getContext() {
+        return context;
+    }
+
+    /**
+     * Stops accepting registrations. Listeners of events completing after this call are not called anymore.
+     */
+    synchronized void release() {
+        synchronized(pending) {
+            released = true;
+            if(pending.isEmpty() && callbackRef != 0) {
+                binding.clDeleteEventCallbackRef(callbackRef);
+                callbackRef = 0;
+            }
+        }
+        if(defaultExecutor != null) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [pending: "+getPendingCount()+", completed: "+completed.get()+", batches: "+batches.get()+"]";
+    }
+
+    private static final class Completion {
+
+        private final long event;
+        private final int status;
+
+        private Completion(long event, int status) {
+            this.event = event;
+            this.status = status;
+        }
+    }
+
+    private static final class Registration {
+
+        private final CLEvent event;
+        private final CLEventListener listener;
+        private CLEventListener[] more;
+
+        private Registration(CLEvent event, CLEventListener listener) {
+            this.event = event;
+            this.listener = listener;
+        }
+
+        private void add(CLEventListener listener) {
+            if(more == null) {
+                more = new CLEventListener[] {listener};
+            }else{
+                CLEventListener[] array = new CLEventListener[more.length+1];
+                System.arraycopy(more, 0, array, 0, more.length);
+                array[more.length] = listener;
+                more = array;
+            }
+        }
+
+        private void fire(int status) {
+            fire(listener, status);
+            if(more != null) {
+                for (CLEventListener l : more) {
+                    fire(l, status);
+                }
+            }
+        }
+
+        private void fire(CLEventListener l, int status) {
+            try{
+                l.eventStateChanged(event, status);
+            }catch(RuntimeException ex) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+            }
+        }
+    }
+
+}
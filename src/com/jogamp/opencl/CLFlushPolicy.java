@@ -0,0 +1,222 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Automatic flush policy of a {@link CLCommandQueue}. The queue is flushed as soon as one of the
+ * enabled limits is reached: the number of commands, the number of transferred bytes or the time
+ * since the first not flushed command. Command and byte limits are checked after each enqueued command.
+ * The time limit is checked by a shared timer thread, pending commands are flushed after the delay
+ * even if no further command is enqueued. A limit of 0 disables the rule.
+ * <p>
+ * Transfers count their region in bytes, kernels, markers, maps and unmaps count as 0 bytes.
+ * Every queue needs its own policy instance since the policy also counts the triggered flushes.
+ * </p>
+ * @see CLCommandQueue#setFlushPolicy(CLFlushPolicy)
+ * @author Michael Bien
+ */
+public class CLFlushPolicy {
+
+    private static ScheduledExecutorService timer;
+
+    private int maxCommands;
+    private long maxBytes;
+    private volatile long maxDelay;
+
+    // pending state, guarded by this
+    private int commands;
+    private long bytes;
+    private long firstCommand;
+    private ScheduledFuture<?> timeout;
+
+    private final Runnable timeoutTask = new Runnable() {
+        @Override public void run() {
+            timeout();
+        }
+    };
+
+    private volatile long commandFlushes;
+    private volatile long byteFlushes;
+    private volatile long timeFlushes;
+
+    // guarded by this
+    CLCommandQueue queue;
+
+    /**
+     * Flushes after <code>commands</code> enqueued commands.
+     */
+    public CLFlushPolicy setMaxCommands(int commands) {
+        if(commands < 0) {
+            throw new IllegalArgumentException("negative command limit "+commands);
+        }
+        this.maxCommands = commands;
+        return this;
+    }
+
+    /**
+     * Flushes after <code>bytes</code> bytes have been enqueued for transfer.
+     */
+    public CLFlushPolicy setMaxBytes(long bytes) {
+        if(bytes < 0) {
+            throw new IllegalArgumentException("negative byte limit "+bytes);
+        }
+        this.maxBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Flushes when the first not flushed command is older than the given delay.
+     */
+    public CLFlushPolicy setMaxDelay(long delay, TimeUnit unit) {
+        if(delay < 0) {
+            throw new IllegalArgumentException("negative delay "+delay);
+        }
+        this.maxDelay = unit.toNanos(delay);
+        return this;
+    }
+
+    public int getMaxCommands() {
+        return maxCommands;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxDelay(TimeUnit unit) {
+        return unit.convert(maxDelay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of flushes triggered by the command limit.
+     */
+    public long getCommandFlushes() {
+        return commandFlushes;
+    }
+
+    /**
+     * Returns the number of flushes triggered by the byte limit.
+     */
+    public long getByteFlushes() {
+        return byteFlushes;
+    }
+
+    /**
+     * Returns the number of flushes triggered by the time limit.
+     */
+    public long getTimeFlushes() {
+        return timeFlushes;
+    }
+
+    /**
+     * Records an enqueued command and returns true if the queue should be flushed.
+     */
+    synchronized boolean enqueued(long transferBytes) {
+        long delay = maxDelay;
+        if(commands == 0 && delay != 0) {
+            firstCommand = System.nanoTime();
+            timeout = timer().schedule(timeoutTask, delay, TimeUnit.NANOSECONDS);
+        }
+        commands++;
+        bytes += transferBytes;
+
+        if(maxCommands != 0 && commands >= maxCommands) {
+            commandFlushes++;
+            return true;
+        }
+        if(maxBytes != 0 && bytes >= maxBytes) {
+            byteFlushes++;
+            return true;
+        }
+        if(delay != 0 && System.nanoTime() - firstCommand >= delay) {
+            timeFlushes++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by the timer, flushes the queue if the pending commands are older than the delay.
+     */
+    private synchronized void timeout() {
+        long delay = maxDelay;
+        // the task may belong to an already flushed batch
+        if(queue != null && commands > 0 && delay != 0 && System.nanoTime() - firstCommand >= delay) {
+            timeFlushes++;
+            queue.flush(); // calls flushed()
+        }
+    }
+
+    /**
+     * Called after every flush or finish of the queue.
+     */
+    synchronized void flushed() {
+        commands = 0;
+        bytes = 0;
+        if(timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    /**
+     * Attaches the policy to the queue or detaches it if null, pending state is reset.
+     */
+    synchronized void setQueue(CLCommandQueue queue) {
+        this.queue = queue;
+        flushed();
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if(timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CLFlushPolicy-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return timer;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [max commands: "+maxCommands+" max bytes: "+maxBytes
+                +" max delay: "+maxDelay+"ns flushes (commands/bytes/time): "
+                +commandFlushes+"/"+byteFlushes+"/"+timeFlushes+"]";
+    }
+
+}
@@ -34,6 +34,9 @@ import com.jogamp.common.nio.NativeSizeBuffer;
 import com.jogamp.opencl.llb.CLKernelBinding;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.jogamp.opencl.CLException.*;
 import static com.jogamp.opencl.llb.CL.*;
@@ -80,6 +83,18 @@ public class CLKernel extends CLObjectResource implements Cloneable {
     private int argIndex;
     private boolean force32BitArgs;
 
+    // shadow copies of the last set argument values, null if argument caching is disabled
+    private byte[][] argCache;
+    private int[] argCacheSize; // -1 if unknown
+    private long argCacheHits;
+    private long argCacheMisses;
+
+    // per device work group size and preferred multiple
+    private final Map<CLDevice, long[]> workGroupLimits = new HashMap<CLDevice, long[]>(4);
+
+    // hash of source, build options and name, computed by the work group tuner on first use
+    volatile String tunerHash;
+
     CLKernel(CLProgram program, long id) {
         this(program, null, id);
     }
@@ -127,6 +142,12 @@ public class CLKernel extends CLObjectResource implements Cloneable {
         return this;
     }
 
+    public CLKernel putArg(byte value) {
+        setArg(argIndex, value);
+        argIndex++;
+        return this;
+    }
+
     public CLKernel putArg(short value) {
         setArg(argIndex, value);
         argIndex++;
@@ -290,6 +311,11 @@ public class CLKernel extends CLObjectResource implements Cloneable {
         return this;
     }
 
+    public CLKernel setArg(int argumentIndex, byte value) {
+        setArgument(argumentIndex, 1, wrap(value));
+        return this;
+    }
+
     public CLKernel setArg(int argumentIndex, short value) {
         setArgument(argumentIndex, 2, wrap(value));
         return this;
@@ -443,6 +469,8 @@ public class CLKernel extends CLObjectResource implements Cloneable {
             Object value = values[i];
             if(value instanceof CLMemory<?>) {
                 setArg(i, (CLMemory<?>)value);
+            }else if(value instanceof Byte) {
+                setArg(i, (Byte)value);
             }else if(value instanceof Short) {
                 setArg(i, (Short)value);
             }else if(value instanceof Integer) {
@@ -478,10 +506,120 @@ public class CLKernel extends CLObjectResource implements Cloneable {
                     " arguments for a not executable program. "+program);
         }
 
+        if(argCache != null) {
+            if(isCached(argumentIndex, size, value)) {
+                argCacheHits++;
+                return;
+            }
+            argCacheMisses++;
+        }
+
         int ret = binding.clSetKernelArg(ID, argumentIndex, size, value);
         if(ret != CL_SUCCESS) {
+            if(argCache != null) {
+                argCacheSize[argumentIndex] = -1;
+            }
             throw newException(ret, "error setting arg "+argumentIndex+" to value "+value+" of size "+size+" of "+this);
         }
+
+        if(argCache != null) {
+            shadow(argumentIndex, size, value);
+        }
+    }
+
+    private boolean isCached(int index, int size, Buffer value) {
+        if(argCacheSize[index] != size) {
+            return false;
+        }
+        byte[] cached = argCache[index];
+        if(value == null) {
+            return cached == null; // local memory
+        }
+        if(cached == null || !(value instanceof ByteBuffer)) {
+            return false;
+        }
+        ByteBuffer bytes = (ByteBuffer) value;
+        int offset = bytes.position();
+        for (int i = 0; i < size; i++) {
+            if(bytes.get(offset+i) != cached[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void shadow(int index, int size, Buffer value) {
+        if(value == null) {
+            argCache[index] = null;
+            argCacheSize[index] = size;
+        }else if(value instanceof ByteBuffer) {
+            byte[] cached = argCache[index];
+            if(cached == null || cached.length != size) {
+                cached = argCache[index] = new byte[size];
+            }
+            ByteBuffer bytes = (ByteBuffer) value;
+            int offset = bytes.position();
+            for (int i = 0; i < size; i++) {
+                cached[i] = bytes.get(offset+i);
+            }
+            argCacheSize[index] = size;
+        }else{
+            // typed buffers are not cached
+            argCacheSize[index] = -1;
+        }
+    }
+
+    /**
+     * Enables or disables the argument cache. When enabled, setting an argument to the value
+     * it already has is detected by comparing against a shadow copy and skips {@native clSetKernelArg}.
+     * Arguments set before the cache was enabled are unknown to the cache.
+     */
+    public CLKernel setArgCacheEnabled(boolean enable) {
+        if(enable && argCache == null) {
+            argCache = new byte[numArgs][];
+            argCacheSize = new int[numArgs];
+            invalidateArgCache();
+        }else if(!enable) {
+            argCache = null;
+            argCacheSize = null;
+        }
+        return this;
+    }
+
+    public boolean isArgCacheEnabled() {
+        return argCache != null;
+    }
+
+    /**
+     * Forgets all cached argument values. Must be called if arguments of this kernel
+     * have been set without using this object, for example through the low level bindings.
+     */
+    public void invalidateArgCache() {
+        if(argCacheSize != null) {
+            Arrays.fill(argCacheSize, -1);
+        }
+    }
+
+    /**
+     * Returns how often {@native clSetKernelArg} has been skipped since the argument cache was enabled.
+     */
+    public long getArgCacheHitCount() {
+        return argCacheHits;
+    }
+
+    /**
+     * Returns how often the argument cache missed and {@native clSetKernelArg} was called.
+     */
+    public long getArgCacheMissCount() {
+        return argCacheMisses;
+    }
+
+    /**
+     * Returns a new launcher which sets packed arguments of this kernel and enqueues it in a single native call.
+     * @see CLCommandQueue#put1DRangeKernel(CLKernelLauncher, long, long, long)
+     */
+    public CLKernelLauncher createLauncher() {
+        return new CLKernelLauncher(this);
     }
 
     /**
@@ -536,6 +674,10 @@ public class CLKernel extends CLObjectResource implements Cloneable {
         return buffer.putDouble(0, a).putDouble(8, b).putDouble(16, c).putDouble(24, d);
     }
 
+    private Buffer wrap(byte value) {
+        return buffer.put(0, value);
+    }
+
     private Buffer wrap(short value) {
         return buffer.putShort(0, value);
     }
@@ -605,7 +747,7 @@ public class CLKernel extends CLObjectResource implements Cloneable {
      * (register usage etc.) to determine what this work-group size should be. 
      */
     public long getWorkGroupSize(CLDevice device) {
-        return getWorkGroupInfo(device, CL_KERNEL_WORK_GROUP_SIZE);
+        return getWorkGroupLimit(device, 0);
     }
 
     /**
@@ -614,7 +756,26 @@ public class CLKernel extends CLObjectResource implements Cloneable {
      * @since OpenCL 1.1
      */
     public long getPreferredWorkGroupSizeMultiple(CLDevice device) {
-        return getWorkGroupInfo(device, CL_KERNEL_PREFERRED_WORK_GROUP_SIZE_MULTIPLE);
+        return getWorkGroupLimit(device, 1);
+    }
+
+    /**
+     * Returns the cached work group size (index 0) or preferred multiple (index 1) of this kernel on the device.
+     * Both only depend on the compiled kernel and the device and never change, they are queried on first use.
+     */
+    private long getWorkGroupLimit(CLDevice device, int index) {
+        synchronized(workGroupLimits) {
+            long[] limits = workGroupLimits.get(device);
+            if(limits == null) {
+                limits = new long[] {-1, -1};
+                workGroupLimits.put(device, limits);
+            }
+            if(limits[index] < 0) {
+                limits[index] = getWorkGroupInfo(device, index == 0 ? CL_KERNEL_WORK_GROUP_SIZE
+                                                                    : CL_KERNEL_PREFERRED_WORK_GROUP_SIZE_MULTIPLE);
+            }
+            return limits[index];
+        }
     }
 
     /**
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.common.nio.NativeSizeBuffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static com.jogamp.common.os.Platform.*;
+
+/**
+ * Packs kernel arguments into a direct buffer and sets them together with the kernel
+ * launch in a single native call.
+ * <p>
+ * Example:
+ * <pre>
+ * CLKernelLauncher launcher = kernel.createLauncher();
+ * ...
+ * launcher.putArg(bufferA).putArg(bufferB).putArg(elements);
+ * queue.put1DRangeKernel(launcher, 0, globalWorkSize, localWorkSize);
+ * </pre>
+ * Packed arguments are consumed by the launch. Arguments which are not packed keep their
+ * last value, as usual for OpenCL kernels.
+ * </p>
+ * <p>
+ * CLKernelLauncher is not threadsafe.
+ * </p>
+ * @see CLKernel#createLauncher()
+ * @see CLCommandQueue#put1DRangeKernel(CLKernelLauncher, long, long, long)
+ * @author Michael Bien
+ */
+public final class CLKernelLauncher {
+
+    /**
+     * Size of one packed argument: int index, int size, int local flag, int padding, 64bit value.
+     */
+    static final int ENTRY_SIZE = 24;
+
+    private final CLKernel kernel;
+
+    final ByteBuffer args;
+    final NativeSizeBuffer gwo;
+    final NativeSizeBuffer gws;
+    final NativeSizeBuffer lws;
+    final IntBuffer failed;
+
+    int count;
+    private int argIndex;
+
+    CLKernelLauncher(CLKernel kernel) {
+        this.kernel = kernel;
+        // one entry per argument is enough, setting the same index twice is rare
+        this.args = Buffers.newDirectByteBuffer(Math.max(1, kernel.numArgs) * 2 * ENTRY_SIZE);
+        this.gwo = NativeSizeBuffer.allocateDirect(3);
+        this.gws = NativeSizeBuffer.allocateDirect(3);
+        this.lws = NativeSizeBuffer.allocateDirect(3);
+        this.failed = Buffers.newDirectIntBuffer(1);
+    }
+
+    public CLKernelLauncher putArg(CLMemory<?> value) {
+        return setArg(argIndex++, value);
+    }
+
+    public CLKernelLauncher putArg(short value) {
+        return setArg(argIndex++, value);
+    }
+
+    public CLKernelLauncher putArg(int value) {
+        return setArg(argIndex++, value);
+    }
+
+    public CLKernelLauncher putArg(long value) {
+        return setArg(argIndex++, value);
+    }
+
+    public CLKernelLauncher putArg(float value) {
+        return setArg(argIndex++, value);
+    }
+
+    public CLKernelLauncher putArg(double value) {
+        return setArg(argIndex++, value);
+    }
+
+    /**
+     * Packs the size of a <i>local</i> kernel argument at the next index.
+     */
+    public CLKernelLauncher putArgSize(int size) {
+        return setArgSize(argIndex++, size);
+    }
+
+    public CLKernelLauncher setArg(int argumentIndex, CLMemory<?> value) {
+        int pos = entry(argumentIndex, is32Bit()?4:8, false);
+        if(is32Bit()) {
+            args.putInt(pos, (int)value.ID);
+        }else{
+            args.putLong(pos, value.ID);
+        }
+        return this;
+    }
+
+    public CLKernelLauncher setArg(int argumentIndex, short value) {
+        args.putShort(entry(argumentIndex, 2, false), value);
+        return this;
+    }
+
+    public CLKernelLauncher setArg(int argumentIndex, int value) {
+        args.putInt(entry(argumentIndex, 4, false), value);
+        return this;
+    }
+
+    public CLKernelLauncher setArg(int argumentIndex, long value) {
+        if(kernel.isForce32BitArgsEnabled()) {
+            args.putInt(entry(argumentIndex, 4, false), (int)value);
+        }else{
+            args.putLong(entry(argumentIndex, 8, false), value);
+        }
+        return this;
+    }
+
+    public CLKernelLauncher setArg(int argumentIndex, float value) {
+        args.putFloat(entry(argumentIndex, 4, false), value);
+        return this;
+    }
+
+    public CLKernelLauncher setArg(int argumentIndex, double value) {
+        if(kernel.isForce32BitArgsEnabled()) {
+            args.putFloat(entry(argumentIndex, 4, false), (float)value);
+        }else{
+            args.putDouble(entry(argumentIndex, 8, false), value);
+        }
+        return this;
+    }
+
+    /**
+     * Packs the size of a <i>local</i> kernel argument at the specified index.
+     */
+    public CLKernelLauncher setArgSize(int argumentIndex, int size) {
+        entry(argumentIndex, size, true);
+        return this;
+    }
+
+    /**
+     * Discards all packed arguments and resets the relative argument index.
+     */
+    public CLKernelLauncher rewind() {
+        count = 0;
+        argIndex = 0;
+        return this;
+    }
+
+    /**
+     * Returns the number of packed arguments.
+     */
+    public int getArgCount() {
+        return count;
+    }
+
+    public CLKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Validates the launcher before it is passed to native code.
+     */
+    void checkLaunch() {
+        if(!kernel.getProgram().isExecutable()) {
+            throw new IllegalStateException("can not set program" +
+                    " arguments for a not executable program. "+kernel.getProgram());
+        }
+    }
+
+    /**
+     * Returns the argument index of the packed entry which could not be set or -1 if
+     * the launch itself failed.
+     */
+    int getFailedArg() {
+        int i = failed.get(0);
+        return i < 0 ? -1 : args.getInt(i*ENTRY_SIZE);
+    }
+
+    private int entry(int argumentIndex, int size, boolean local) {
+        if(argumentIndex >= kernel.numArgs || argumentIndex < 0) {
+            throw new IndexOutOfBoundsException("kernel "+ kernel +" has "+kernel.numArgs+
+                    " arguments, can not set argument with index "+argumentIndex);
+        }
+        if(count*ENTRY_SIZE == args.capacity()) {
+            throw new IllegalStateException("too many arguments packed since the last launch of "+kernel);
+        }
+        int pos = count*ENTRY_SIZE;
+        args.putInt(pos, argumentIndex).putInt(pos+4, size).putInt(pos+8, local?1:0).putLong(pos+16, 0);
+        count++;
+        return pos+16;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [kernel: "+kernel.name+" packed args: "+count+"]";
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool of kernel instances with the same name. CLKernel is not threadsafe, a pool hands out
+ * one instance per thread instead of sharing a kernel behind a lock.
+ * Instances are created on demand until the pool reaches its maximum size.
+ * Checkout and checkin are lock free.
+ * <p><pre>
+ *     CLKernel kernel = pool.checkout();
+ *     try{
+ *         kernel.putArgs(a, b).putArg(n);
+ *         queue.put1DRangeKernel(kernel, 0, gws, lws);
+ *     }finally{
+ *         pool.checkin(kernel);
+ *     }
+ * </pre></p>
+ * The pool and all its kernels are released with the program.
+ * @see CLProgram#createKernelPool(java.lang.String, int)
+ * @author Michael Bien
+ */
+public class CLKernelPool implements CLResource {
+
+    private final CLProgram program;
+    private final String name;
+    private final int maxSize;
+
+    private final ConcurrentLinkedQueue<CLKernel> idle;
+    private final AtomicInteger size;
+
+    private volatile boolean released;
+
+    CLKernelPool(CLProgram program, String name, int maxSize) {
+        if(name == null) {
+            throw new IllegalArgumentException("kernel name was null");
+        }
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least one but was "+maxSize);
+        }
+        this.program = program;
+        this.name = name;
+        this.maxSize = maxSize;
+        this.idle = new ConcurrentLinkedQueue<CLKernel>();
+        this.size = new AtomicInteger();
+    }
+
+    /**
+     * Returns an idle kernel or creates a new one if the pool did not reach its maximum size yet,
+     * returns null otherwise.
+     */
+    public CLKernel tryCheckout() {
+
+        if(released) {
+            throw new IllegalStateException(this+" was already released");
+        }
+
+        CLKernel kernel = idle.poll();
+        if(kernel != null) {
+            return kernel;
+        }
+
+        while(true) {
+            int current = size.get();
+            if(current >= maxSize) {
+                return null;
+            }
+            if(size.compareAndSet(current, current+1)) {
+                break;
+            }
+        }
+
+        try{
+            kernel = program.createCLKernel(name);
+        }catch(RuntimeException ex) {
+            size.decrementAndGet();
+            throw ex;
+        }
+        if(kernel == null) { // program released concurrently
+            size.decrementAndGet();
+            throw new IllegalStateException(this+" was already released");
+        }
+        return kernel;
+    }
+
+    /**
+     * Returns a kernel for exclusive use by the calling thread, waits until a kernel is checked in
+     * if all kernels are in use and the pool reached its maximum size.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public CLKernel checkout() throws InterruptedException {
+        long backoff = 1000;
+        while(true) {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            CLKernel kernel = tryCheckout();
+            if(kernel != null) {
+                return kernel;
+            }
+            LockSupport.parkNanos(this, backoff);
+            backoff = Math.min(backoff*2, 1000000);
+        }
+    }
+
+    /**
+     * Returns the kernel to the pool. The kernel's argument index is rewound,
+     * argument values stay set and may be reused by the next owner.
+     */
+    public void checkin(CLKernel kernel) {
+
+        if(kernel.getProgram() != program || !name.equals(kernel.name)) {
+            throw new IllegalArgumentException(kernel+" is not part of "+this);
+        }
+
+        if(released) {
+            if(!kernel.isReleased()) {
+                kernel.release();
+            }
+            return;
+        }
+
+        idle.offer(kernel.rewind());
+
+        // release() may have drained the queue before the offer
+        if(released && idle.remove(kernel) && !kernel.isReleased()) {
+            kernel.release();
+        }
+    }
+
+    /**
+     * Releases all idle kernels of this pool, kernels which are still checked out are released on checkin.
+     */
+    @Override
+    public void release() {
+        if(released) {
+            throw new RuntimeException(getClass().getSimpleName()+" was already released.");
+        }
+        released = true;
+
+        CLKernel kernel;
+        while((kernel = idle.poll()) != null) {
+            synchronized(kernel) {
+                if(!kernel.isReleased()) {
+                    kernel.release();
+                }
+            }
+        }
+        program.onKernelPoolReleased(this);
+    }
+
+    @Override
+    public boolean isReleased() {
+        return released;
+    }
+
+    public CLProgram getProgram() {
+        return program;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of kernels created by this pool.
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of kernels which are currently not checked out.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [name: "+name+", size: "+size.get()+"/"+maxSize+"]";
+    }
+
+}
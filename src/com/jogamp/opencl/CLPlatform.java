@@ -117,6 +117,7 @@ public class CLPlatform {
     public final CLVersion version;
 
     protected static CL cl;
+    private static volatile boolean initialized;
     private static CLAccessorFactory defaultFactory;
     private final CLAccessorFactory factory;
 
@@ -145,7 +146,10 @@ public class CLPlatform {
      * @throws JogampRuntimeException if something went wrong in the initialization (e.g. OpenCL lib not found).
      */
     public static void initialize() throws JogampRuntimeException {
-        initialize(null);
+        // fast path, avoids the class lock once JOCL is loaded
+        if(!initialized) {
+            initialize(null);
+        }
     }
 
     // keep package private until SPI is stablized
@@ -204,6 +208,8 @@ public class CLPlatform {
                 }
             });
 
+            initialized = true;
+
 //            System.out.println("\n"+table);
 //            System.out.println("unavailable functions: "+table.getNullPointerFunctions());
 
@@ -217,6 +223,22 @@ public class CLPlatform {
 
     }
 
+    /**
+     * Returns true if the OpenCL library could be loaded and at least one platform is installed.
+     * Unlike the other static methods of this class this method does not throw if OpenCL is unavailable.
+     */
+    public static boolean isAvailable() {
+        try{
+            initialize();
+            IntBuffer ib = Buffers.newDirectIntBuffer(1);
+            return cl.clGetPlatformIDs(0, null, ib) == CL_SUCCESS && ib.get(0) > 0;
+        }catch(RuntimeException ex) { // library not found, missing functions or ICD errors
+            return false;
+        }catch(UnsatisfiedLinkError ex) {
+            return false;
+        }
+    }
+
     /**
      * Returns the default OpenCL platform or null when no platform found.
      */
@@ -261,6 +283,23 @@ public class CLPlatform {
      * @throws CLException if something went wrong initializing OpenCL
      */
     public static CLPlatform[] listCLPlatforms(Filter<CLPlatform>... filter) {
+
+        long[] ids = listPlatformIDs();
+
+        List<CLPlatform> platforms = new ArrayList<CLPlatform>();
+
+        for (int i = 0; i < ids.length; i++) {
+            CLPlatform platform = new CLPlatform(ids[i]);
+            addIfAccepted(platform, platforms, filter);
+        }
+
+        return platforms.toArray(new CLPlatform[platforms.size()]);
+    }
+
+    /**
+     * Returns the ids of all available OpenCL platforms.
+     */
+    static long[] listPlatformIDs() {
         initialize();
 
         IntBuffer ib = Buffers.newDirectIntBuffer(1);
@@ -273,14 +312,15 @@ public class CLPlatform {
         ret = cl.clGetPlatformIDs(platformId.capacity(), platformId, null);
         checkForError(ret, "can not enumerate platforms");
 
-        List<CLPlatform> platforms = new ArrayList<CLPlatform>();
-
-        for (int i = 0; i < platformId.capacity(); i++) {
-            CLPlatform platform = new CLPlatform(platformId.get(i));
-            addIfAccepted(platform, platforms, filter);
+        long[] ids = new long[platformId.capacity()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = platformId.get(i);
         }
+        return ids;
+    }
 
-        return platforms.toArray(new CLPlatform[platforms.size()]);
+    static CLPlatform createPlatform(long id) {
+        return new CLPlatform(id);
     }
 
     /**
@@ -388,10 +428,12 @@ public class CLPlatform {
 
             CLDevice device = devices[i];
 
-            if(type == null || type.equals(device.getType())) {
+            CLDeviceSnapshot snapshot = device.snapshot();
+
+            if(type == null || type.equals(snapshot.getType())) {
 
-                int maxComputeUnits     = device.getMaxComputeUnits();
-                int maxClockFrequency   = device.getMaxClockFrequency();
+                int maxComputeUnits     = snapshot.getMaxComputeUnits();
+                int maxClockFrequency   = snapshot.getMaxClockFrequency();
                 int flops = maxComputeUnits*maxClockFrequency;
 
                 if(flops > maxflops) {
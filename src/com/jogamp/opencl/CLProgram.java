@@ -40,6 +40,7 @@ import com.jogamp.opencl.llb.impl.BuildProgramCallback;
 import com.jogamp.opencl.util.CLBuildListener;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -47,7 +48,11 @@ import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 
 import static com.jogamp.opencl.CLException.*;
 import static com.jogamp.opencl.llb.CL.*;
@@ -63,17 +68,29 @@ import static com.jogamp.common.nio.Buffers.*;
  */
 public class CLProgram extends CLObjectResource {
 
-    private final static ReentrantLock buildLock = new ReentrantLock();
+    // build locks of the current BuildScope, keyed by platform or device id
+    private final static Map<Long, Semaphore> buildLocks = new HashMap<Long, Semaphore>();
+    private static BuildScope buildScope = BuildScope.GLOBAL;
+    private static int buildPermits = 1;
+
     private final CLProgramBinding binding;
     
     private final Set<CLKernel> kernels;
+    private final Set<CLKernelPool> kernelPools;
     private Map<CLDevice, Status> buildStatusMap;
 
     private boolean executable;
 
+    // options of the last build, null if none or not built from source
+    private volatile String buildOptions;
+
+    // key of this program in the shared programs of the context, null if not shared
+    volatile String sharedKey;
+
     private CLProgram(CLContext context, long id) {
         super(context, id);
         this.kernels = Collections.synchronizedSet(new HashSet<CLKernel>());
+        this.kernelPools = Collections.synchronizedSet(new HashSet<CLKernelPool>());
         this.binding = context.getPlatform().getProgramBinding();
     }
     
@@ -324,14 +341,20 @@ public class CLProgram extends CLObjectResource {
      * @return this
      * @param devices A list of devices this program should be build on or null for all devices of its context.
      * @param listener A listener who is notified when the program was built.
+     * @throws IllegalStateException if this is a shared program.
+     * @see CLContext#getSharedProgram(java.lang.String, java.lang.String, com.jogamp.opencl.CLDevice[])
      */
     public CLProgram build(final CLBuildListener listener, String options, CLDevice... devices) {
 
         if(released) {
             throw new CLException("can not build a released program");
         }
+        if(sharedKey != null) {
+            // rebuilding would release the kernels of all other owners
+            throw new IllegalStateException("can not rebuild the shared program "+this);
+        }
 
-        if(!kernels.isEmpty()) {
+        if(!kernels.isEmpty() || !kernelPools.isEmpty()) {
             //No changes to the program executable are allowed while there are
             //kernel objects associated with a program object.
             releaseKernels();
@@ -356,13 +379,16 @@ public class CLProgram extends CLObjectResource {
         // invalidate build status
         buildStatusMap = null;
         executable = false;
+        buildOptions = options;
+
+        final Semaphore[] locks = getBuildLocks(context, devices);
 
         BuildProgramCallback callback = null;
         if(listener != null) {
             callback = new BuildProgramCallback() {
                 @Override
                 public void buildFinished(long cl_program) {
-                    buildLock.unlock();
+                    release(locks);
                     listener.buildFinished(CLProgram.this);
                 }
             };
@@ -373,15 +399,16 @@ public class CLProgram extends CLObjectResource {
 
         // spec: building programs is not threadsafe, we are locking the API call to
         // make sure only one thread calls it at a time until it completes (asynchronous or synchronously).
+        // The scope of the lock is configurable, see setBuildConcurrency.
         {
-            buildLock.lock();
+            acquire(locks);
             boolean exception = true;
             try{
                 ret = binding.clBuildProgram(ID, count, deviceIDs, options, callback);
                 exception = false;
             }finally{
                 if(callback == null || exception) {
-                    buildLock.unlock();
+                    release(locks);
                 }
             }
         }
@@ -393,6 +420,117 @@ public class CLProgram extends CLObjectResource {
         return this;
     }
 
+    /**
+     * Builds this program on the given executor and returns immediately.
+     * The returned Future throws an ExecutionException wrapping the {@link CLException} if the build failed.
+     * @see #build(java.lang.String, com.jogamp.opencl.CLDevice[])
+     * @see #setBuildConcurrency(com.jogamp.opencl.CLProgram.BuildScope, int)
+     * @param devices A list of devices this program should be build on or null for all devices of its context.
+     */
+    public Future<CLProgram> buildAsync(Executor executor, final String options, final CLDevice... devices) {
+        FutureTask<CLProgram> task = new FutureTask<CLProgram>(new Callable<CLProgram>() {
+            @Override
+            public CLProgram call() {
+                return build(options, devices);
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Sets how many builds may run at the same time and what they have to share.
+     * The default is one build at a time in the whole JVM, since some OpenCL 1.0 drivers
+     * can not build programs concurrently. Builds already in progress are not affected.
+     * @param scope Builds compete for permits of the JVM, of their platform or of each of their devices.
+     * @param permits The number of builds which may run concurrently in the scope.
+     */
+    public static void setBuildConcurrency(BuildScope scope, int permits) {
+        if(scope == null) {
+            throw new IllegalArgumentException("scope was null");
+        }
+        if(permits < 1) {
+            throw new IllegalArgumentException("permits must be at least one but was "+permits);
+        }
+        synchronized(buildLocks) {
+            buildScope = scope;
+            buildPermits = permits;
+            buildLocks.clear();
+        }
+    }
+
+    /**
+     * Returns the scope of the build concurrency policy.
+     * @see #setBuildConcurrency(com.jogamp.opencl.CLProgram.BuildScope, int)
+     */
+    public static BuildScope getBuildScope() {
+        synchronized(buildLocks) {
+            return buildScope;
+        }
+    }
+
+    /**
+     * Returns the number of concurrent builds per scope.
+     * @see #setBuildConcurrency(com.jogamp.opencl.CLProgram.BuildScope, int)
+     */
+    public static int getBuildPermits() {
+        synchronized(buildLocks) {
+            return buildPermits;
+        }
+    }
+
+    private static Semaphore[] getBuildLocks(CLContext context, CLDevice[] devices) {
+        synchronized(buildLocks) {
+            long[] keys;
+            switch(buildScope) {
+                case GLOBAL:
+                    keys = new long[] {0};
+                    break;
+                case PLATFORM:
+                    keys = new long[] {context.getPlatform().ID};
+                    break;
+                default:
+                    if(devices == null || devices.length == 0) {
+                        devices = context.getDevices();
+                    }
+                    keys = new long[devices.length];
+                    for (int i = 0; i < devices.length; i++) {
+                        keys[i] = devices[i].ID;
+                    }
+                    // acquiring in a fixed order prevents deadlocks between overlapping device sets
+                    Arrays.sort(keys);
+            }
+
+            Semaphore[] locks = new Semaphore[keys.length];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if(i > 0 && keys[i] == keys[i-1]) {
+                    continue;
+                }
+                Semaphore lock = buildLocks.get(keys[i]);
+                if(lock == null) {
+                    lock = new Semaphore(buildPermits, true);
+                    buildLocks.put(keys[i], lock);
+                }
+                locks[count++] = lock;
+            }
+            return count == locks.length ? locks : Arrays.copyOf(locks, count);
+        }
+    }
+
+    // semaphores instead of locks since the build callback may release them on a driver thread
+    private static void acquire(Semaphore[] locks) {
+        for (Semaphore lock : locks) {
+            lock.acquireUninterruptibly();
+        }
+    }
+
+    private static void release(Semaphore[] locks) {
+        for (int i = locks.length-1; i >= 0; i--) {
+            locks[i].release();
+        }
+    }
+
     /**
      * Prepares the build for this program by returning a new {@link CLProgramConfiguration}.
      */
@@ -400,6 +538,20 @@ public class CLProgram extends CLObjectResource {
         return CLProgramBuilder.createConfiguration(this);
     }
 
+    /**
+     * Creates a pool of kernel instances with the specified kernel name.
+     * The pool and all its kernels are released with this program or when this program is rebuilt.
+     * @param maxSize The maximum number of kernel instances the pool creates on demand.
+     */
+    public CLKernelPool createKernelPool(String kernelName, int maxSize) {
+        if(released) {
+            throw new CLException("can not create a kernel pool for a released program");
+        }
+        CLKernelPool pool = new CLKernelPool(this, kernelName, maxSize);
+        kernelPools.add(pool);
+        return pool;
+    }
+
     /**
      * Creates a kernel with the specified kernel name.
      */
@@ -481,12 +633,21 @@ public class CLProgram extends CLObjectResource {
         this.kernels.remove(kernel);
     }
 
+    void onKernelPoolReleased(CLKernelPool pool) {
+        kernelPools.remove(pool);
+    }
+
     /**
      * Releases this program with its kernels.
      */
     @Override
     public synchronized void release() {
 
+        if(sharedKey != null && !context.releaseSharedProgram(this)) {
+            // still in use by other owners of the shared program
+            return;
+        }
+
         super.release();
         releaseKernels();
 
@@ -501,6 +662,16 @@ public class CLProgram extends CLObjectResource {
     }
 
     private void releaseKernels() {
+        synchronized(kernelPools) {
+            if(!kernelPools.isEmpty()) {
+                CLKernelPool[] array = kernelPools.toArray(new CLKernelPool[kernelPools.size()]);
+                for (CLKernelPool pool : array) {
+                    if(!pool.isReleased()) {
+                        pool.release();
+                    }
+                }
+            }
+        }
         synchronized(kernels) {
             if(!kernels.isEmpty()) {
                 // copy to array to prevent concurrent modification exception
@@ -544,6 +715,13 @@ public class CLProgram extends CLObjectResource {
 
     }
 
+    /**
+     * Returns the options of the last build or null if the program was built without options.
+     */
+    public String getBuildOptions() {
+        return buildOptions;
+    }
+
     /**
      * Returns the build log of this program on all devices. The contents of the log are
      * implementation dependent.
@@ -764,6 +942,28 @@ public class CLProgram extends CLObjectResource {
         }
     }
 
+    /**
+     * Scope of the build concurrency policy.
+     * @see CLProgram#setBuildConcurrency(com.jogamp.opencl.CLProgram.BuildScope, int)
+     */
+    public enum BuildScope {
+
+        /**
+         * All builds of the JVM share the permits.
+         */
+        GLOBAL,
+
+        /**
+         * Builds share the permits of their platform.
+         */
+        PLATFORM,
+
+        /**
+         * Builds share the permits of every device they build for.
+         */
+        DEVICE;
+    }
+
     /**
      * Common compiler options for the OpenCL compiler.
      */
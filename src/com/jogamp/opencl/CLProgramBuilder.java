@@ -238,12 +238,24 @@ public final class CLProgramBuilder implements CLProgramConfiguration, Serializa
         if(program == null) {
             throw new NullPointerException("no program has been set");
         }
+        return program.build(listener, getOptions(), getDevices());
+    }
+
+    /**
+     * Returns the options and defines of this configuration as one option string.
+     */
+    String getOptions() {
         List<String> setup = new ArrayList<String>();
         setup.addAll(optionSet);
         setup.addAll(defineSet);
-        String options = CLProgram.optionsOf(setup.toArray(new String[setup.size()]));
-        CLDevice[] devices = binariesMap.keySet().toArray(new CLDevice[binariesMap.size()]);
-        return program.build(listener, options, devices);
+        return CLProgram.optionsOf(setup.toArray(new String[setup.size()]));
+    }
+
+    /**
+     * Returns the build targets of this configuration, an empty array stands for all devices of the context.
+     */
+    CLDevice[] getDevices() {
+        return binariesMap.keySet().toArray(new CLDevice[binariesMap.size()]);
     }
 
     @Override
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.opencl.util.CLBuildConfiguration;
+import com.jogamp.opencl.util.CLUtil;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of program binaries.
+ * Binaries are stored per device in files named after a hash of the program source, the build options
+ * (including defines), the platform and the device name, vendor and driver version. A driver update
+ * therefore never loads stale binaries.
+ * <p>
+ * Programs are built from cached binaries if binaries are available for all build targets, otherwise
+ * or if the driver rejects the binaries the program is built from source and the new binaries are stored.
+ * Files are written atomically, the least recently used binaries are removed when the cache grows
+ * beyond its size limit.
+ * </p>
+ * <p><pre>
+ *     CLProgramCache cache = new CLProgramCache(new File(cacheDir, "jocl"), 64*1024*1024);
+ *     CLProgram program = cache.build(context, source, "-cl-fast-relaxed-math");
+ * </pre></p>
+ * concurrency:<br/>
+ * CLProgramCache is threadsafe, several processes may share the same cache directory.
+ * @author Michael Bien
+ */
+public class CLProgramCache {
+
+    private static final String SUFFIX = ".clbin";
+
+    private final File directory;
+    private final long maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a cache storing binaries in the given directory.
+     * @param maxSize the size in bytes the cache may grow to before binaries are evicted.
+     */
+    public CLProgramCache(File directory, long maxSize) {
+        if(directory == null) {
+            throw new IllegalArgumentException("directory was null");
+        }
+        if(maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive but was "+maxSize);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Builds the source for all devices of the context.
+     * @see #build(com.jogamp.opencl.CLContext, java.lang.String, java.lang.String, com.jogamp.opencl.CLDevice[])
+     */
+    public CLProgram build(CLContext context, String source) {
+        return build(context, source, null, (CLDevice[])null);
+    }
+
+    /**
+     * Builds the source with the options and defines of the configuration.
+     * @see #build(com.jogamp.opencl.CLContext, java.lang.String, java.lang.String, com.jogamp.opencl.CLDevice[])
+     */
+    public CLProgram build(CLContext context, String source, CLBuildConfiguration configuration) {
+        if(!(configuration instanceof CLProgramBuilder)) {
+            throw new IllegalArgumentException("unsupported configuration: "+configuration);
+        }
+        CLProgramBuilder builder = (CLProgramBuilder) configuration;
+        return build(context, source, builder.getOptions(), builder.getDevices());
+    }
+
+    /**
+     * Returns a built program for the source and options. The program is created from cached binaries
+     * if available and from source otherwise.
+     * @param devices A list of devices the program should be build on or null for all devices of the context.
+     */
+    public CLProgram build(CLContext context, String source, String options, CLDevice... devices) {
+
+        if(options == null) {
+            options = "";
+        }
+        if(devices == null || devices.length == 0) {
+            devices = context.getDevices();
+        }
+
+        Map<CLDevice, File> files = new LinkedHashMap<CLDevice, File>();
+        for (CLDevice device : devices) {
+            files.put(device, new File(directory, key(source, options, device)+SUFFIX));
+        }
+
+        Map<CLDevice, byte[]> binaries = load(files);
+        if(binaries != null) {
+            CLProgram program = null;
+            try{
+                program = context.createProgram(binaries);
+                program.build(options, devices);
+                hits.incrementAndGet();
+                return program;
+            }catch(CLException ex) {
+                // binaries rejected by the driver, fall back to a source build
+                if(program != null) {
+                    program.release();
+                }
+                for (File file : files.values()) {
+                    file.delete();
+                }
+                rejected.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        CLProgram program = context.createProgram(source).build(options, devices);
+        store(files, program.getBinaries());
+        return program;
+    }
+
+    private Map<CLDevice, byte[]> load(Map<CLDevice, File> files) {
+
+        Map<CLDevice, byte[]> binaries = new LinkedHashMap<CLDevice, byte[]>();
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<CLDevice, File> entry : files.entrySet()) {
+            File file = entry.getValue();
+            try{
+                byte[] bytes = read(file);
+                if(bytes == null) {
+                    return null;
+                }
+                binaries.put(entry.getKey(), bytes);
+            }catch(IOException ex) {
+                return null;
+            }
+            // keeps recently used binaries from eviction
+            file.setLastModified(now);
+        }
+        return binaries;
+    }
+
+    private void store(Map<CLDevice, File> files, Map<CLDevice, byte[]> binaries) {
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+
+        for (Map.Entry<CLDevice, File> entry : files.entrySet()) {
+            byte[] bytes = binaries.get(entry.getKey());
+            if(bytes != null && bytes.length > 0) {
+                try{
+                    CLUtil.writeFile(entry.getValue(), bytes);
+                }catch(IOException ex) {
+                    // the cache is only an optimization
+                    return;
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Removes the least recently used binaries until the cache fits into its size limit.
+     */
+    public synchronized void evict() {
+
+        File[] entries = listEntries();
+        long size = 0;
+        for (File file : entries) {
+            size += file.length();
+        }
+        if(size <= maxSize) {
+            return;
+        }
+
+        // lastModified is read once, other processes may touch files while sorting
+        final Map<File, Long> lastUsed = new HashMap<File, Long>();
+        for (File file : entries) {
+            lastUsed.put(file, file.lastModified());
+        }
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override public int compare(File a, File b) {
+                long x = lastUsed.get(a);
+                long y = lastUsed.get(b);
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < entries.length && size > maxSize; i++) {
+            long length = entries[i].length();
+            if(entries[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Removes all binaries of this cache.
+     */
+    public synchronized void clear() {
+        for (File file : listEntries()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the size in bytes of all cached binaries.
+     */
+    public long getSize() {
+        long size = 0;
+        for (File file : listEntries()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of programs built from cached binaries.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of programs built from source.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of times cached binaries were rejected by the driver.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private File[] listEntries() {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    private static String key(String source, String options, CLDevice device) {
+        CLDeviceSnapshot snapshot = device.snapshot();
+        CLPlatform platform = device.getPlatform();
+        return CLUtil.sha1(source, options.trim(), platform.getName(), platform.getVersion().fullversion,
+                           snapshot.getName(), snapshot.getVendor(), snapshot.getDriverVersion());
+    }
+
+    private static byte[] read(File file) throws IOException {
+        long length = file.length();
+        if(length == 0 || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[(int)length];
+        InputStream in = new FileInputStream(file);
+        try{
+            int offset = 0;
+            while(offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length-offset);
+                if(read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+        }finally{
+            in.close();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [directory: "+directory+", size: "+getSize()+"/"+maxSize
+                                        +", hits: "+hits+", misses: "+misses+"]";
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.common.nio.NativeSizeBuffer;
+import com.jogamp.opencl.CLEvent.CommandType;
+import com.jogamp.opencl.llb.CLEventBinding;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.jogamp.opencl.CLException.*;
+import static com.jogamp.opencl.llb.CL.*;
+
+/**
+ * Low overhead profiler which attaches events to every n-th command enqueued on a
+ * {@link CLCommandQueue} created with {@link CLCommandQueue.Mode#PROFILING_MODE}.
+ * <p>
+ * Commands which are enqueued with an explicit {@link CLEventList} are never sampled.
+ * Timestamps of completed samples are fetched with one native call per sample and published
+ * to a fixed size ring buffer which can be read lock free from any thread.
+ * </p>
+ * @see CLCommandQueue#enableSampling(int, int)
+ * @author Michael Bien
+ */
+public class CLSamplingProfiler {
+
+    private final CLCommandQueue queue;
+    private final CLEventBinding binding;
+    private final int rate;
+    private int counter;
+
+    // receives the id of the sampled event
+    final NativeSizeBuffer sampleID;
+    private boolean armed;
+
+    // sampled but not yet completed commands, only accessed by the thread using the queue
+    private final long[] pendingIDs;
+    private final CommandType[] pendingTypes;
+    private final String[] pendingNames;
+    private final long[] pendingBytes;
+    private int pendingCount;
+
+    // execution status, queued, submit, start, end
+    private final LongBuffer timestamps;
+
+    private final AtomicReferenceArray<Sample> ring;
+    private final AtomicLong written;
+    private final AtomicLong dropped;
+
+    CLSamplingProfiler(CLCommandQueue queue, int rate, int capacity) {
+        if(rate < 1) {
+            throw new IllegalArgumentException("sample rate must be at least 1 but was "+rate);
+        }
+        if(capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1 but was "+capacity);
+        }
+        this.queue = queue;
+        this.binding = queue.getContext().getPlatform().getEventBinding();
+        this.rate = rate;
+
+        this.sampleID = NativeSizeBuffer.allocateDirect(1);
+
+        int maxPending = Math.min(capacity, 64);
+        this.pendingIDs = new long[maxPending];
+        this.pendingTypes = new CommandType[maxPending];
+        this.pendingNames = new String[maxPending];
+        this.pendingBytes = new long[maxPending];
+
+        this.timestamps = Buffers.newDirectLongBuffer(5);
+
+        this.ring = new AtomicReferenceArray<Sample>(capacity);
+        this.written = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Returns the event id buffer if the next command should be sampled, null otherwise.
+     */
+    NativeSizeBuffer sample() {
+        armed = false;
+        if(++counter < rate) {
+            return null;
+        }
+        counter = 0;
+        if(pendingCount == pendingIDs.length) {
+            poll();
+            if(pendingCount == pendingIDs.length) {
+                dropped.incrementAndGet();
+                return null;
+            }
+        }
+        armed = true;
+        return sampleID.position(0);
+    }
+
+    /**
+     * Called after the command has been enqueued successfully.
+     */
+    void sampled(CommandType type, String name, long bytes) {
+        if(!armed) {
+            return;
+        }
+        armed = false;
+        pendingIDs[pendingCount] = sampleID.get(0);
+        pendingTypes[pendingCount] = type;
+        pendingNames[pendingCount] = name;
+        pendingBytes[pendingCount] = bytes;
+        pendingCount++;
+        poll();
+    }
+
+    /**
+     * Publishes all completed samples. This is done automatically while commands are enqueued,
+     * applications may call it after {@link CLCommandQueue#finish()}.
+     * Must be called from the thread which uses the queue.
+     */
+    public void poll() {
+        int error = CL_SUCCESS;
+        int i = 0;
+        while(i < pendingCount) {
+            int ret = binding.clGetEventProfilingTimestamps(pendingIDs[i], timestamps);
+            long status = timestamps.get(0);
+            if(ret == CL_SUCCESS && status > CL_COMPLETE) {
+                i++; // still in flight
+                continue;
+            }
+            if(ret == CL_SUCCESS && status == CL_COMPLETE) {
+                publish(new Sample(pendingTypes[i], pendingNames[i], pendingBytes[i],
+                        timestamps.get(1), timestamps.get(2), timestamps.get(3), timestamps.get(4)));
+            }else{
+                dropped.incrementAndGet();
+            }
+            // errors are reported after the loop, a released id must never stay pending
+            int released = binding.clReleaseEvent(pendingIDs[i]);
+            if(released != CL_SUCCESS && error == CL_SUCCESS) {
+                error = released;
+            }
+            remove(i);
+        }
+        checkForError(error, "can not release event");
+    }
+
+    private void remove(int index) {
+        int last = --pendingCount;
+        pendingIDs[index]   = pendingIDs[last];
+        pendingTypes[index] = pendingTypes[last];
+        pendingNames[index] = pendingNames[last];
+        pendingBytes[index] = pendingBytes[last];
+        pendingTypes[last] = null;
+        pendingNames[last] = null;
+    }
+
+    private void publish(Sample sample) {
+        long n = written.get();
+        ring.set((int)(n % ring.length()), sample);
+        written.lazySet(n+1);
+    }
+
+    /**
+     * Returns the most recent published samples, oldest first.
+     */
+    public List<Sample> getSamples() {
+        long n = written.get();
+        int count = (int)Math.min(n, ring.length());
+        List<Sample> list = new ArrayList<Sample>(count);
+        for(long i = n-count; i < n; i++) {
+            Sample sample = ring.get((int)(i % ring.length()));
+            if(sample != null) {
+                list.add(sample);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the total number of published samples.
+     */
+    public long getSampleCount() {
+        return written.get();
+    }
+
+    /**
+     * Returns the number of samples which were skipped or failed.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the sample rate, one of <code>rate</code> commands is sampled.
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    public CLCommandQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Releases all pending events.
+     */
+    void release() {
+        for (int i = 0; i < pendingCount; i++) {
+            binding.clReleaseEvent(pendingIDs[i]);
+            pendingTypes[i] = null;
+            pendingNames[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [rate: 1/"+rate+" samples: "+getSampleCount()+" dropped: "+getDroppedCount()+"]";
+    }
+
+    /**
+     * Profiling information of a sampled command. All timestamps are device time in nanoseconds.
+     */
+    public static final class Sample {
+
+        public final CommandType type;
+        /**
+         * The kernel name or null if the command was no kernel execution.
+         */
+        public final String name;
+        /**
+         * The number of transferred bytes or 0 if the command was no transfer.
+         */
+        public final long bytes;
+
+        public final long queued;
+        public final long submit;
+        public final long start;
+        public final long end;
+
+        Sample(CommandType type, String name, long bytes, long queued, long submit, long start, long end) {
+            this.type = type;
+            this.name = name;
+            this.bytes = bytes;
+            this.queued = queued;
+            this.submit = submit;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the time the command waited in the queue before it started.
+         */
+        public long getQueueTime() {
+            return start - queued;
+        }
+
+        /**
+         * Returns the execution time of the command.
+         */
+        public long getExecutionTime() {
+            return end - start;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName()+" [type: "+type+(name == null ? "" : " name: "+name)
+                    +" bytes: "+bytes+" queue time: "+getQueueTime()+"ns execution time: "+getExecutionTime()+"ns]";
+        }
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.common.nio.NativeSizeBuffer;
+import com.jogamp.opencl.CLMemory.Mem;
+import com.jogamp.opencl.llb.CLEventBinding;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+
+import static com.jogamp.opencl.CLException.*;
+import static com.jogamp.opencl.llb.CL.*;
+
+/**
+ * Pool of pinned staging buffers for host/device transfers of a {@link CLCommandQueue}.
+ * <p>
+ * Staging buffers are allocated with {@link Mem#ALLOCATE_BUFFER} and mapped once into host memory.
+ * Most implementations back those buffers with page locked memory which allows the driver to
+ * transfer directly via DMA instead of copying through an internal pinned bounce buffer.
+ * Buffers are organized in power of two size classes and reused across transfers.
+ * </p>
+ * <p>
+ * Once installed via {@link CLCommandQueue#setStagingPool(CLStagingPool)}, whole buffer
+ * {@link CLCommandQueue#putWriteBuffer putWriteBuffer} and blocking
+ * {@link CLCommandQueue#putReadBuffer putReadBuffer} calls of accepted sizes are routed through the pool.
+ * Non blocking staged writes copy the host data immediately, the host buffer may therefore be reused as soon
+ * as the method returns. Staged commands are not sampled by the {@link CLSamplingProfiler}.
+ * </p>
+ * A pool is used by the thread owning its queue only and must be released before the queue.
+ * @author Michael Bien
+ */
+public class CLStagingPool {
+
+    private final CLCommandQueue queue;
+    private final CLEventBinding binding;
+
+    private final int minClass;
+    private final int maxClass;
+    private final int buffersPerClass;
+
+    // per size class: free buffers and buffers in use by enqueued commands, oldest first
+    private final ArrayDeque<Staging>[] free;
+    private final ArrayDeque<Staging>[] inFlight;
+    private final int[] allocated;
+
+    private final IntBuffer status;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a pool for transfers between <code>minBytes</code> and <code>maxBytes</code>.
+     * @param maxBytes at most 2^30, the largest power of two size class fitting into an int.
+     * @param buffersPerClass maximum number of staging buffers allocated per size class.
+     */
+    @SuppressWarnings("unchecked")
+    public CLStagingPool(CLCommandQueue queue, int minBytes, int maxBytes, int buffersPerClass) {
+        if(minBytes <= 0 || maxBytes < minBytes || maxBytes > 1 << 30) {
+            throw new IllegalArgumentException("invalid size range ["+minBytes+", "+maxBytes+"]");
+        }
+        if(buffersPerClass < 1) {
+            throw new IllegalArgumentException("buffersPerClass must be at least 1 but was "+buffersPerClass);
+        }
+        this.queue = queue;
+        this.binding = queue.getContext().getPlatform().getEventBinding();
+        this.minClass = sizeClass(minBytes);
+        this.maxClass = sizeClass(maxBytes);
+        this.buffersPerClass = buffersPerClass;
+
+        int classes = maxClass-minClass+1;
+        this.free = new ArrayDeque[classes];
+        this.inFlight = new ArrayDeque[classes];
+        this.allocated = new int[classes];
+        for (int i = 0; i < classes; i++) {
+            free[i] = new ArrayDeque<Staging>();
+            inFlight[i] = new ArrayDeque<Staging>();
+        }
+        this.status = Buffers.newDirectIntBuffer(1);
+    }
+
+    private static int sizeClass(long bytes) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(bytes-1, 1));
+    }
+
+    /**
+     * Returns true if transfers of the given memory object are routed through this pool.
+     */
+    public boolean accepts(CLBuffer<?> buffer) {
+        Buffer host = buffer.getBuffer();
+        if(host == null || !host.isDirect() || host.position() != 0) {
+            return false;
+        }
+        int size = buffer.getNIOSize();
+        return size > 0 && sizeClass(size) >= minClass && sizeClass(size) <= maxClass;
+    }
+
+    /**
+     * Returns a mapped staging buffer of at least the given size. Reclaims buffers of completed
+     * commands and waits for the oldest command of the size class if the class is exhausted.
+     */
+    Staging acquire(long bytes) {
+
+        int index = Math.max(sizeClass(bytes), minClass) - minClass;
+
+        reclaim(index, false);
+        Staging staging = free[index].poll();
+        if(staging == null && allocated[index] >= buffersPerClass) {
+            reclaim(index, true);
+            staging = free[index].poll();
+        }
+        if(staging != null) {
+            hits++;
+        }else{
+            // class not exhausted or nothing in flight to wait for
+            staging = new Staging(index, 1 << (index+minClass));
+            allocated[index]++;
+            misses++;
+        }
+        staging.mapped.clear();
+        return staging;
+    }
+
+    /**
+     * Marks the staging buffer as used by the command of the given event. The pool takes ownership of the event.
+     */
+    void inFlight(Staging staging, long event) {
+        staging.event = event;
+        inFlight[staging.index].add(staging);
+    }
+
+    /**
+     * Retains the event of a command using the staging buffer whose event is owned by the caller.
+     */
+    void inFlight(Staging staging, CLEvent event) {
+        checkForError(binding.clRetainEvent(event.ID), "can not retain event");
+        inFlight(staging, event.ID);
+    }
+
+    /**
+     * Returns a staging buffer which is no longer in use.
+     */
+    void release(Staging staging) {
+        free[staging.index].add(staging);
+    }
+
+    private void reclaim(int index, boolean wait) {
+        ArrayDeque<Staging> list = inFlight[index];
+        while(!list.isEmpty()) {
+            Staging staging = list.peek();
+            if(wait) {
+                checkForError(binding.clWaitForEvents(1, staging.eventID.put(0, staging.event)), "can not wait for event");
+                wait = false;
+            }else{
+                int ret = binding.clGetEventInfo(staging.event, CL_EVENT_COMMAND_EXECUTION_STATUS, 4, status, null);
+                checkForError(ret, "can not query event status");
+                if(status.get(0) > CL_COMPLETE) {
+                    return; // commands of one queue complete roughly in order
+                }
+            }
+            checkForError(binding.clReleaseEvent(staging.event), "can not release event");
+            list.poll();
+            free[index].add(staging);
+        }
+    }
+
+    /**
+     * Returns how often a transfer reused an existing staging buffer.
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns how often a new staging buffer had to be allocated.
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of currently allocated staging buffers.
+     */
+    public int getBufferCount() {
+        int count = 0;
+        for (int n : allocated) {
+            count += n;
+        }
+        return count;
+    }
+
+    public CLCommandQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Waits for all staged commands, unmaps and releases all staging buffers.
+     */
+    public void release() {
+        if(queue.getStagingPool() == this) {
+            queue.setStagingPool(null);
+        }
+        for (int i = 0; i < free.length; i++) {
+            reclaim(i, true);
+            while(!inFlight[i].isEmpty()) {
+                reclaim(i, true);
+            }
+            for (Staging staging : free[i]) {
+                queue.putUnmapMemory(staging.buffer, staging.mapped);
+                staging.buffer.release();
+            }
+            free[i].clear();
+            allocated[i] = 0;
+        }
+        queue.finish();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [buffers: "+getBufferCount()+", hits: "+hits+", misses: "+misses+"]";
+    }
+
+    private static void put(Buffer dest, Buffer src) {
+        if(dest instanceof ByteBuffer) {
+            ((ByteBuffer)dest).put((ByteBuffer)src);
+        }else if(dest instanceof FloatBuffer) {
+            ((FloatBuffer)dest).put((FloatBuffer)src);
+        }else if(dest instanceof IntBuffer) {
+            ((IntBuffer)dest).put((IntBuffer)src);
+        }else if(dest instanceof DoubleBuffer) {
+            ((DoubleBuffer)dest).put((DoubleBuffer)src);
+        }else if(dest instanceof LongBuffer) {
+            ((LongBuffer)dest).put((LongBuffer)src);
+        }else if(dest instanceof ShortBuffer) {
+            ((ShortBuffer)dest).put((ShortBuffer)src);
+        }else{
+            ((CharBuffer)dest).put((CharBuffer)src);
+        }
+    }
+
+    /**
+     * A mapped staging buffer of one size class.
+     */
+    final class Staging {
+
+        final int index;
+        final CLBuffer<?> buffer;
+        final ByteBuffer mapped;
+
+        // receives the event of a non blocking staged command
+        final NativeSizeBuffer eventID;
+        long event;
+
+        // native order view of mapped and a cached view matching the type of the last host buffer
+        private final ByteBuffer bytes;
+        private Buffer view;
+
+        private Staging(int index, int size) {
+            this.index = index;
+            this.buffer = queue.getContext().createBuffer(size, Mem.ALLOCATE_BUFFER, Mem.READ_WRITE);
+            this.mapped = queue.putMapBuffer(buffer, CLMemory.Map.READ_WRITE, true);
+            this.eventID = NativeSizeBuffer.allocateDirect(1);
+            this.bytes = mapped.duplicate().order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * Copies the whole host buffer into the staging memory.
+         */
+        void copyFrom(Buffer host) {
+            Buffer staging = view(host);
+            int position = host.position();
+            int limit = host.limit();
+            host.clear();
+            try{
+                put(staging, host);
+            }finally{
+                host.limit(limit);
+                host.position(position);
+            }
+        }
+
+        /**
+         * Copies the staging memory into the whole host buffer.
+         */
+        void copyTo(Buffer host) {
+            Buffer staging = view(host);
+            int position = host.position();
+            int limit = host.limit();
+            host.clear();
+            try{
+                put(host, staging);
+            }finally{
+                host.limit(limit);
+                host.position(position);
+            }
+        }
+
+        /**
+         * Returns a view of the staging memory of the same type as the host buffer, cleared and limited to its capacity.
+         */
+        private Buffer view(Buffer host) {
+            Buffer current = view;
+            if(!sameType(current, host)) {
+                bytes.clear();
+                if(host instanceof ByteBuffer) {
+                    current = bytes;
+                }else if(host instanceof FloatBuffer) {
+                    current = bytes.asFloatBuffer();
+                }else if(host instanceof IntBuffer) {
+                    current = bytes.asIntBuffer();
+                }else if(host instanceof DoubleBuffer) {
+                    current = bytes.asDoubleBuffer();
+                }else if(host instanceof LongBuffer) {
+                    current = bytes.asLongBuffer();
+                }else if(host instanceof ShortBuffer) {
+                    current = bytes.asShortBuffer();
+                }else if(host instanceof CharBuffer) {
+                    current = bytes.asCharBuffer();
+                }else{
+                    throw new IllegalArgumentException("unsupported buffer type "+host.getClass());
+                }
+                view = current;
+            }
+            current.clear();
+            current.limit(host.capacity());
+            return current;
+        }
+
+        private boolean sameType(Buffer view, Buffer host) {
+            return view instanceof ByteBuffer   && host instanceof ByteBuffer
+                || view instanceof FloatBuffer  && host instanceof FloatBuffer
+                || view instanceof IntBuffer    && host instanceof IntBuffer
+                || view instanceof DoubleBuffer && host instanceof DoubleBuffer
+                || view instanceof LongBuffer   && host instanceof LongBuffer
+                || view instanceof ShortBuffer  && host instanceof ShortBuffer
+                || view instanceof CharBuffer   && host instanceof CharBuffer;
+        }
+
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.common.JogampRuntimeException;
+import com.jogamp.opencl.util.CLUtil;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The OpenCL platforms and devices of this host.
+ * Every platform is enumerated by its own task which lists the devices and takes their
+ * {@link CLDeviceSnapshot}s, this hides most of the ICD latency when several OpenCL implementations are installed.
+ * <p>
+ * The topology can be stored to a file and compared against it on the next start
+ * to find out if drivers or hardware changed since then.
+ * </p>
+ * <p><pre>
+ *     File file = new File(cacheDir, "topology.properties");
+ *     CLTopology topology = CLTopology.discover();
+ *     if(!topology.matches(file)) {
+ *         // invalidate caches which depend on the devices
+ *         topology.store(file);
+ *     }
+ * </pre></p>
+ * @author Michael Bien
+ */
+public final class CLTopology {
+
+    private final CLPlatform[] platforms;
+    private final CLDevice[][] devices;
+    private final Properties description;
+
+    private CLTopology(CLPlatform[] platforms, CLDevice[][] devices) {
+        this.platforms = platforms;
+        this.devices = devices;
+        this.description = describe(platforms, devices);
+    }
+
+    /**
+     * Discovers all platforms and devices concurrently using up to one thread per available processor.
+     * @see #discover(int)
+     */
+    public static CLTopology discover() {
+        return discover(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Discovers all platforms and devices concurrently using up to the given amount of threads.
+     * One thread enumerates everything sequentially on the calling thread.
+     */
+    public static CLTopology discover(int threads) {
+
+        if(threads < 1) {
+            throw new IllegalArgumentException("threads must be at least one but was "+threads);
+        }
+
+        final long[] ids = CLPlatform.listPlatformIDs();
+        final CLPlatform[] platforms = new CLPlatform[ids.length];
+        CLDevice[][] devices = new CLDevice[ids.length][];
+
+        if(threads == 1 || ids.length <= 1) {
+            for (int i = 0; i < ids.length; i++) {
+                platforms[i] = CLPlatform.createPlatform(ids[i]);
+                devices[i] = enumerate(platforms[i]);
+            }
+            return new CLTopology(platforms, devices);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ids.length), new ThreadFactory() {
+            private int count = 0;
+            @Override public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CLTopology-"+(count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try{
+            List<Future<CLDevice[]>> futures = new ArrayList<Future<CLDevice[]>>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                final int index = i;
+                futures.add(executor.submit(new Callable<CLDevice[]>() {
+                    @Override public CLDevice[] call() {
+                        platforms[index] = CLPlatform.createPlatform(ids[index]);
+                        return enumerate(platforms[index]);
+                    }
+                }));
+            }
+            for (int i = 0; i < ids.length; i++) {
+                devices[i] = futures.get(i).get();
+            }
+        }catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JogampRuntimeException("interrupted while discovering platforms", ex);
+        }catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new JogampRuntimeException("platform discovery failed", cause);
+        }finally{
+            executor.shutdownNow();
+        }
+
+        return new CLTopology(platforms, devices);
+    }
+
+    private static CLDevice[] enumerate(CLPlatform platform) {
+        CLDevice[] devices = platform.listCLDevices();
+        for (CLDevice device : devices) {
+            device.snapshot();
+        }
+        return devices;
+    }
+
+    private static Properties describe(CLPlatform[] platforms, CLDevice[][] devices) {
+        Properties properties = new Properties();
+        properties.setProperty("platforms", String.valueOf(platforms.length));
+        for (int i = 0; i < platforms.length; i++) {
+            CLPlatform platform = platforms[i];
+            String key = "platform."+i+".";
+            properties.setProperty(key+"name", platform.getName());
+            properties.setProperty(key+"vendor", platform.getVendor());
+            properties.setProperty(key+"version", platform.getVersion().fullversion);
+            properties.setProperty(key+"devices", String.valueOf(devices[i].length));
+            for (int n = 0; n < devices[i].length; n++) {
+                CLDeviceSnapshot device = devices[i][n].snapshot();
+                String dkey = key+"device."+n+".";
+                properties.setProperty(dkey+"name", device.getName());
+                properties.setProperty(dkey+"vendor", device.getVendor());
+                properties.setProperty(dkey+"type", device.getType().name());
+                properties.setProperty(dkey+"driver", device.getDriverVersion());
+                properties.setProperty(dkey+"computeUnits", String.valueOf(device.getMaxComputeUnits()));
+                properties.setProperty(dkey+"globalMemSize", String.valueOf(device.getGlobalMemSize()));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Returns all discovered platforms.
+     */
+    public CLPlatform[] getPlatforms() {
+        return platforms.clone();
+    }
+
+    /**
+     * Returns the devices of the given platform or an empty array if the platform is not part of this topology.
+     */
+    public CLDevice[] getDevices(CLPlatform platform) {
+        for (int i = 0; i < platforms.length; i++) {
+            if(platforms[i].equals(platform)) {
+                return devices[i].clone();
+            }
+        }
+        return new CLDevice[0];
+    }
+
+    /**
+     * Returns the devices of all platforms.
+     */
+    public CLDevice[] getDevices() {
+        List<CLDevice> list = new ArrayList<CLDevice>();
+        for (CLDevice[] platformDevices : devices) {
+            list.addAll(Arrays.asList(platformDevices));
+        }
+        return list.toArray(new CLDevice[list.size()]);
+    }
+
+    /**
+     * Returns true if the file contains a stored topology equal to this topology.
+     * Missing or unreadable files never match.
+     */
+    public boolean matches(File file) {
+        if(!file.isFile()) {
+            return false;
+        }
+        Properties stored = new Properties();
+        try{
+            InputStream in = new FileInputStream(file);
+            try{
+                stored.load(in);
+            }finally{
+                in.close();
+            }
+        }catch(IOException ex) {
+            return false;
+        }
+        return description.equals(stored);
+    }
+
+    /**
+     * Stores this topology to the given file. The file is written to a temporary file first
+     * and moved into place afterwards, concurrent readers never see partially written files.
+     * @see CLUtil#writeFile(File, byte[])
+     */
+    public void store(File file) throws IOException {
+        CLUtil.storeProperties(file, description, "OpenCL topology");
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [platforms: "+platforms.length+", devices: "+getDevices().length+"]";
+    }
+
+}
@@ -109,13 +109,13 @@ public class CLWork {
     public CLWork optimizeFor(CLDevice device) {
 
         long multiple = kernel.getPreferredWorkGroupSizeMultiple(device);
-        int[] maxWorkItemSizes = device.getMaxWorkItemSizes();
+        CLDeviceSnapshot snapshot = device.snapshot();
 
         for (int i = 0; i < dimension; i++) {
             long group = groupSize.get(i);
             if(group > 0) {
                 group = roundUp(group, multiple);
-                if(group <= maxWorkItemSizes[i]) {
+                if(group <= snapshot.getMaxWorkItemSize(i)) {
                     groupSize.put(i, group);
 
                     long work = workSize.get(i);
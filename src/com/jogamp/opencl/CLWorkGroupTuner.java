@@ -0,0 +1,454 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl;
+
+import com.jogamp.common.nio.NativeSizeBuffer;
+import com.jogamp.opencl.CLEvent.ProfilingCommand;
+import com.jogamp.opencl.util.CLUtil;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Empirical work group size tuner. {@link #tune} times candidate local sizes of a kernel
+ * using profiling events and remembers the fastest for the kernel, device and global size.
+ * Queues using the tuner apply the tuned local size to {@link CLCommandQueue#putWork} calls
+ * which don't specify a group size, lookups don't enqueue or time anything.
+ * <p>
+ * Results are keyed by a hash of the program source (or the binaries of programs created from binaries),
+ * build options and kernel name, the device name and driver version and the global work size. If the tuner was created with a file, results are loaded from and saved to it.
+ * </p>
+ * <p><pre>
+ *     CLWorkGroupTuner tuner = new CLWorkGroupTuner(new File(cacheDir, "workgroups.properties"));
+ *     queue.setWorkGroupTuner(tuner);
+ *     if(!tuner.isTuned(work, queue.getDevice())) {
+ *         tuner.tune(profilingQueue, work, 10);
+ *     }
+ *     queue.putWork(work);
+ * </pre></p>
+ * @see CLCommandQueue#setWorkGroupTuner(com.jogamp.opencl.CLWorkGroupTuner)
+ * @author Michael Bien
+ */
+public class CLWorkGroupTuner {
+
+    private final File file;
+
+    // results by file key and by composite key for lookups from putWork
+    private final Map<String, Tuned> results;
+    private final Map<Key, Tuned> lookups;
+    private final Map<CLDevice, String> deviceKeys;
+
+    private final ThreadLocal<Key> probes = new ThreadLocal<Key>() {
+        @Override protected Key initialValue() {
+            return new Key();
+        }
+    };
+
+    /**
+     * Creates a tuner keeping results in memory only.
+     */
+    public CLWorkGroupTuner() {
+        this.file = null;
+        this.results = new ConcurrentHashMap<String, Tuned>();
+        this.lookups = new ConcurrentHashMap<Key, Tuned>();
+        this.deviceKeys = new ConcurrentHashMap<CLDevice, String>();
+    }
+
+    /**
+     * Creates a tuner storing its results in the given file. Existing results are loaded.
+     */
+    public CLWorkGroupTuner(File file) throws IOException {
+        this.file = file;
+        this.results = new ConcurrentHashMap<String, Tuned>();
+        this.lookups = new ConcurrentHashMap<Key, Tuned>();
+        this.deviceKeys = new ConcurrentHashMap<CLDevice, String>();
+        if(file.isFile()) {
+            load(file);
+        }
+    }
+
+    /**
+     * Times all candidate local sizes of the work on the queue's device and returns the fastest.
+     * The global work size of the work is not changed, only local sizes dividing it are candidates.
+     * An array of zeros stands for letting the driver choose.
+     * @param queue A queue created with {@link CLCommandQueue.Mode#PROFILING_MODE}.
+     * @param iterations The number of timed launches per candidate.
+     */
+    public long[] tune(CLCommandQueue queue, CLWork work, int iterations) {
+
+        if(!queue.isProfilingEnabled()) {
+            throw new IllegalArgumentException("tuning requires a queue created with "+CLCommandQueue.Mode.PROFILING_MODE);
+        }
+        if(iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least one but was "+iterations);
+        }
+
+        String hash = kernelHash(work.kernel);
+        if(hash.length() == 0) {
+            throw new IllegalArgumentException("can not identify the program of "+work.kernel+", it has neither source nor binaries");
+        }
+
+        CLDevice device = queue.getDevice();
+        long[] global = toArray(work.getWorkSize(), work.dimension);
+
+        long[] best = null;
+        long bestTime = Long.MAX_VALUE;
+
+        for (long[] candidate : candidates(work.kernel, device, global)) {
+            long time;
+            try{
+                time = time(queue, work, candidate, iterations);
+            }catch(CLException ex) {
+                // e.g. out of resources for this local size
+                continue;
+            }
+            if(time < bestTime) {
+                bestTime = time;
+                best = candidate;
+            }
+        }
+
+        if(best == null) {
+            throw new CLException("no local work size could be launched for "+work);
+        }
+
+        put(hash, deviceKey(device), global, new Tuned(best));
+
+        if(file != null) {
+            try{
+                save(file);
+            }catch(IOException ex) {
+                // results stay in memory
+            }
+        }
+        return best.clone();
+    }
+
+    private long time(CLCommandQueue queue, CLWork work, long[] local, int iterations) {
+
+        NativeSizeBuffer localSize = toBuffer(local);
+
+        // warmup
+        queue.putNDRangeKernel(work.kernel, work.dimension, work.getWorkOffset(), work.getWorkSize(), localSize).finish();
+
+        CLEventList events = new CLEventList(iterations);
+        try{
+            for (int i = 0; i < iterations; i++) {
+                queue.putNDRangeKernel(work.kernel, work.dimension, work.getWorkOffset(), work.getWorkSize(), localSize, events);
+            }
+            queue.finish();
+
+            long time = 0;
+            for (CLEvent event : events) {
+                time += event.getProfilingInfo(ProfilingCommand.END)
+                      - event.getProfilingInfo(ProfilingCommand.START);
+            }
+            return time;
+        }finally{
+            events.release();
+        }
+    }
+
+    /**
+     * Power of two local sizes within the device and kernel limits which divide the global size,
+     * plus the driver's choice.
+     */
+    private static List<long[]> candidates(CLKernel kernel, CLDevice device, long[] global) {
+
+        long maxGroup = kernel.getWorkGroupSize(device);
+        CLDeviceSnapshot snapshot = device.snapshot();
+
+        List<long[]> candidates = new ArrayList<long[]>();
+        candidates.add(new long[global.length]);
+        addCandidates(candidates, new long[global.length], 0, 1, maxGroup, snapshot, global);
+        return candidates;
+    }
+
+    private static void addCandidates(List<long[]> list, long[] local, int dim, long product, long maxGroup,
+                                      CLDeviceSnapshot snapshot, long[] global) {
+        if(dim == global.length) {
+            list.add(local.clone());
+            return;
+        }
+        for (long size = 1; size <= snapshot.getMaxWorkItemSize(dim) && product*size <= maxGroup; size *= 2) {
+            if(global[dim] % size == 0) {
+                local[dim] = size;
+                addCandidates(list, local, dim+1, product*size, maxGroup, snapshot, global);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a tuned local size is known for the work on the device.
+     */
+    public boolean isTuned(CLWork work, CLDevice device) {
+        return find(work.kernel, device, work.dimension, work.getWorkSize()) != null;
+    }
+
+    /**
+     * Returns the tuned local size for the work on the device or null if not tuned.
+     */
+    public long[] getLocalSize(CLWork work, CLDevice device) {
+        Tuned tuned = find(work.kernel, device, work.dimension, work.getWorkSize());
+        return tuned == null ? null : tuned.local.clone();
+    }
+
+    /**
+     * Returns the tuned local size as buffer or null if not tuned or the driver should choose.
+     */
+    NativeSizeBuffer getGroupSize(CLKernel kernel, CLDevice device, int dimension, NativeSizeBuffer workSize) {
+        Tuned tuned = find(kernel, device, dimension, workSize);
+        return tuned == null ? null : tuned.buffer;
+    }
+
+    /**
+     * Lookup without locking or allocation once kernel and device keys are cached.
+     */
+    private Tuned find(CLKernel kernel, CLDevice device, int dimension, NativeSizeBuffer workSize) {
+        String hash = kernelHash(kernel);
+        if(hash.length() == 0) {
+            return null;
+        }
+        Key probe = probes.get();
+        probe.set(hash, deviceKey(device), dimension,
+                  workSize.get(0), dimension > 1 ? workSize.get(1) : 0, dimension > 2 ? workSize.get(2) : 0);
+        return lookups.get(probe);
+    }
+
+    /**
+     * Removes all results.
+     */
+    public void clear() {
+        results.clear();
+        lookups.clear();
+    }
+
+    /**
+     * Returns the number of tuned kernel, device and global size combinations.
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * Loads results from the given file and adds them to the results of this tuner.
+     */
+    public final void load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try{
+            properties.load(in);
+        }finally{
+            in.close();
+        }
+        for (String key : properties.stringPropertyNames()) {
+            // kernel hash|device name|driver version|global size
+            int first = key.indexOf('|');
+            int last = key.lastIndexOf('|');
+            if(first <= 0 || last <= first) {
+                continue;
+            }
+            try{
+                put(key.substring(0, first), key.substring(first+1, last), parse(key.substring(last+1)),
+                    new Tuned(parse(properties.getProperty(key))));
+            }catch(NumberFormatException ex) {
+                // skip corrupt entries
+            }
+        }
+    }
+
+    /**
+     * Saves all results to the given file. The file is written to a temporary file first and moved into place afterwards.
+     * @see CLUtil#writeFile(File, byte[])
+     */
+    public synchronized void save(File file) throws IOException {
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Tuned> entry : results.entrySet()) {
+            properties.setProperty(entry.getKey(), format(entry.getValue().local));
+        }
+
+        CLUtil.storeProperties(file, properties, "OpenCL work group sizes");
+    }
+
+    private void put(String kernelHash, String deviceKey, long[] global, Tuned tuned) {
+        if(global.length < 1 || global.length > 3) {
+            throw new NumberFormatException("invalid global work size "+format(global));
+        }
+        results.put(kernelHash+'|'+deviceKey+'|'+format(global), tuned);
+        lookups.put(new Key().set(kernelHash, deviceKey, global.length,
+                                  global[0], global.length > 1 ? global[1] : 0, global.length > 2 ? global[2] : 0), tuned);
+    }
+
+    /**
+     * Returns the hash identifying the kernel or an empty string if the program has neither source nor binaries.
+     */
+    private static String kernelHash(CLKernel kernel) {
+        // the program can not be rebuilt while the kernel exists, the hash stays valid
+        String hash = kernel.tunerHash;
+        if(hash == null) {
+            CLProgram program = kernel.getProgram();
+            String code = program.getSource();
+            if(code.length() == 0) {
+                // created from binaries, e.g. by the program cache
+                Map<CLDevice, byte[]> binaries = program.getBinaries();
+                code = binaries.isEmpty() ? null : "binaries:"+CLUtil.sha1(binaries.values().toArray(new byte[binaries.size()][]));
+            }
+            if(code == null) {
+                hash = "";
+            }else{
+                String options = program.getBuildOptions();
+                hash = CLUtil.sha1(code, options == null ? "" : options, kernel.name);
+            }
+            kernel.tunerHash = hash;
+        }
+        return hash;
+    }
+
+    private String deviceKey(CLDevice device) {
+        String key = deviceKeys.get(device);
+        if(key == null) {
+            CLDeviceSnapshot snapshot = device.snapshot();
+            key = snapshot.getName()+'|'+snapshot.getDriverVersion();
+            deviceKeys.put(device, key);
+        }
+        return key;
+    }
+
+    private static long[] toArray(NativeSizeBuffer buffer, int dimension) {
+        long[] array = new long[dimension];
+        for (int i = 0; i < dimension; i++) {
+            array[i] = buffer.get(i);
+        }
+        return array;
+    }
+
+    private static NativeSizeBuffer toBuffer(long[] local) {
+        for (long size : local) {
+            if(size == 0) {
+                return null;
+            }
+        }
+        NativeSizeBuffer buffer = NativeSizeBuffer.allocateDirect(local.length);
+        for (int i = 0; i < local.length; i++) {
+            buffer.put(i, local[i]);
+        }
+        return buffer;
+    }
+
+    private static String format(long[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if(i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    private static long[] parse(String value) {
+        String[] parts = value.split(",");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i].trim());
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [results: "+results.size()+", file: "+file+"]";
+    }
+
+    /**
+     * Composite key of kernel hash, device key and global work size. Lookups reuse a thread local instance.
+     */
+    private static final class Key {
+
+        private String kernel;
+        private String device;
+        private int dimension;
+        private long x, y, z;
+        private int hash;
+
+        private Key set(String kernel, String device, int dimension, long x, long y, long z) {
+            this.kernel = kernel;
+            this.device = device;
+            this.dimension = dimension;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            int h = kernel.hashCode();
+            h = 31*h + device.hashCode();
+            h = 31*h + dimension;
+            h = 31*h + (int)(x ^ (x >>> 32));
+            h = 31*h + (int)(y ^ (y >>> 32));
+            h = 31*h + (int)(z ^ (z >>> 32));
+            this.hash = h;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && dimension == other.dimension
+                && x == other.x && y == other.y && z == other.z
+                && kernel.equals(other.kernel) && device.equals(other.device);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    private static final class Tuned {
+
+        private final long[] local;
+        private final NativeSizeBuffer buffer; // null for the driver's choice
+
+        private Tuned(long[] local) {
+            this.local = local;
+            this.buffer = toBuffer(local);
+        }
+
+    }
+
+}
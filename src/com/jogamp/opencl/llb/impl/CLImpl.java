@@ -37,6 +37,7 @@ import com.jogamp.opencl.CLErrorHandler;
 import com.jogamp.opencl.CLException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 
 import static com.jogamp.common.nio.Buffers.*;
 
@@ -166,6 +167,34 @@ public class CLImpl extends CLAbstractImpl {
 
     private native int clSetEventCallback0(long event, int type, CLEventCallback cb, long address);
 
+    @Override
+    public long clNewEventCallbackRef(CLEventCallback cb) {
+        if (cb == null) {
+            throw new IllegalArgumentException("callback was null");
+        }
+        return clNewEventCallbackRef0(cb);
+    }
+
+    private native long clNewEventCallbackRef0(CLEventCallback cb);
+
+    @Override
+    public int clSetEventCallbackRef(long event, int trigger, long callbackRef) {
+        final long address = addressTable._addressof_clSetEventCallback;
+        if (address == 0) {
+            throw new UnsupportedOperationException("Method not available");
+        }
+        return clSetEventCallbackRef0(event, trigger, callbackRef, address);
+    }
+
+    private native int clSetEventCallbackRef0(long event, int type, long callbackRef, long address);
+
+    @Override
+    public void clDeleteEventCallbackRef(long callbackRef) {
+        clDeleteEventCallbackRef0(callbackRef);
+    }
+
+    private native void clDeleteEventCallbackRef0(long callbackRef);
+
 
     @Override
     public int clSetMemObjectDestructorCallback(long memObjID, CLMemObjectDestructorCallback cb) {
@@ -179,6 +208,115 @@ public class CLImpl extends CLAbstractImpl {
     private native int clSetMemObjectDestructorCallback0(long memObjID, CLMemObjectDestructorCallback cb, long address);
 
 
+    @Override
+    public int clEnqueueCommandList(long command_queue, ByteBuffer commands, int length, int last_enqueue, Object[] host_buffers,
+            int num_events_in_wait_list, NativeSizeBuffer event_wait_list, NativeSizeBuffer event, IntBuffer failed_command) {
+
+        if (!commands.isDirect()) {
+            throw new CLException("Argument \"commands\" was not a direct buffer");
+        }
+        if (event_wait_list != null && !event_wait_list.isDirect()) {
+            throw new CLException("Argument \"event_wait_list\" was not a direct buffer");
+        }
+        if (event != null && !event.isDirect()) {
+            throw new CLException("Argument \"event\" was not a direct buffer");
+        }
+        if (failed_command != null && !failed_command.isDirect()) {
+            throw new CLException("Argument \"failed_command\" was not a direct buffer");
+        }
+
+        final long writeAddress   = addressTable._addressof_clEnqueueWriteBuffer;
+        final long readAddress    = addressTable._addressof_clEnqueueReadBuffer;
+        final long copyAddress    = addressTable._addressof_clEnqueueCopyBuffer;
+        final long argAddress     = addressTable._addressof_clSetKernelArg;
+        final long rangeAddress   = addressTable._addressof_clEnqueueNDRangeKernel;
+        final long barrierAddress = addressTable._addressof_clEnqueueBarrier;
+        if (writeAddress == 0 || readAddress == 0 || copyAddress == 0
+         || argAddress == 0 || rangeAddress == 0 || barrierAddress == 0) {
+            throw new UnsupportedOperationException("Method not available");
+        }
+
+        return clEnqueueCommandList0(command_queue, commands, getDirectBufferByteOffset(commands), length, last_enqueue, host_buffers,
+                num_events_in_wait_list, event_wait_list != null ? event_wait_list.getBuffer() : null, getDirectBufferByteOffset(event_wait_list),
+                event != null ? event.getBuffer() : null, getDirectBufferByteOffset(event),
+                failed_command, getDirectBufferByteOffset(failed_command),
+                writeAddress, readAddress, copyAddress, argAddress, rangeAddress, barrierAddress);
+    }
+
+    /** Entry point to the command list replay loop, see clImplCustomCode.c */
+    private native int clEnqueueCommandList0(long command_queue, Object commands, int commands_byte_offset, int length, int last_enqueue,
+            Object[] host_buffers, int num_events_in_wait_list, Object event_wait_list, int event_wait_list_byte_offset,
+            Object event, int event_byte_offset, Object failed_command, int failed_command_byte_offset,
+            long writeAddress, long readAddress, long copyAddress, long argAddress, long rangeAddress, long barrierAddress);
+
+    @Override
+    public int clEnqueueNDRangeKernelWithArgs(long command_queue, long kernel, int num_args, ByteBuffer args, int work_dim,
+            NativeSizeBuffer global_work_offset, NativeSizeBuffer global_work_size, NativeSizeBuffer local_work_size,
+            int num_events_in_wait_list, NativeSizeBuffer event_wait_list, NativeSizeBuffer event, IntBuffer failed_arg) {
+
+        if (!args.isDirect()) {
+            throw new CLException("Argument \"args\" was not a direct buffer");
+        }
+        if (global_work_offset != null && !global_work_offset.isDirect()) {
+            throw new CLException("Argument \"global_work_offset\" was not a direct buffer");
+        }
+        if (global_work_size != null && !global_work_size.isDirect()) {
+            throw new CLException("Argument \"global_work_size\" was not a direct buffer");
+        }
+        if (local_work_size != null && !local_work_size.isDirect()) {
+            throw new CLException("Argument \"local_work_size\" was not a direct buffer");
+        }
+        if (event_wait_list != null && !event_wait_list.isDirect()) {
+            throw new CLException("Argument \"event_wait_list\" was not a direct buffer");
+        }
+        if (event != null && !event.isDirect()) {
+            throw new CLException("Argument \"event\" was not a direct buffer");
+        }
+        if (failed_arg != null && !failed_arg.isDirect()) {
+            throw new CLException("Argument \"failed_arg\" was not a direct buffer");
+        }
+
+        final long argAddress   = addressTable._addressof_clSetKernelArg;
+        final long rangeAddress = addressTable._addressof_clEnqueueNDRangeKernel;
+        if (argAddress == 0 || rangeAddress == 0) {
+            throw new UnsupportedOperationException("Method not available");
+        }
+
+        return clEnqueueNDRangeKernelWithArgs0(command_queue, kernel, num_args, args, getDirectBufferByteOffset(args), work_dim,
+                global_work_offset != null ? global_work_offset.getBuffer() : null, getDirectBufferByteOffset(global_work_offset),
+                global_work_size != null ? global_work_size.getBuffer() : null, getDirectBufferByteOffset(global_work_size),
+                local_work_size != null ? local_work_size.getBuffer() : null, getDirectBufferByteOffset(local_work_size),
+                num_events_in_wait_list, event_wait_list != null ? event_wait_list.getBuffer() : null, getDirectBufferByteOffset(event_wait_list),
+                event != null ? event.getBuffer() : null, getDirectBufferByteOffset(event),
+                failed_arg, getDirectBufferByteOffset(failed_arg), argAddress, rangeAddress);
+    }
+
+    /** Entry point to the fused clSetKernelArg/clEnqueueNDRangeKernel call, see clImplCustomCode.c */
+    private native int clEnqueueNDRangeKernelWithArgs0(long command_queue, long kernel, int num_args, Object args, int args_byte_offset, int work_dim,
+            Object global_work_offset, int global_work_offset_byte_offset, Object global_work_size, int global_work_size_byte_offset,
+            Object local_work_size, int local_work_size_byte_offset, int num_events_in_wait_list, Object event_wait_list, int event_wait_list_byte_offset,
+            Object event, int event_byte_offset, Object failed_arg, int failed_arg_byte_offset, long argAddress, long rangeAddress);
+
+    @Override
+    public int clGetEventProfilingTimestamps(long event, LongBuffer timestamps) {
+
+        if (!timestamps.isDirect()) {
+            throw new CLException("Argument \"timestamps\" was not a direct buffer");
+        }
+        if (timestamps.remaining() < 5) {
+            throw new IllegalArgumentException("timestamps must have room for 5 values");
+        }
+
+        final long infoAddress = addressTable._addressof_clGetEventInfo;
+        final long profilingAddress = addressTable._addressof_clGetEventProfilingInfo;
+        if (infoAddress == 0 || profilingAddress == 0) {
+            throw new UnsupportedOperationException("Method not available");
+        }
+        return clGetEventProfilingTimestamps0(event, timestamps, getDirectBufferByteOffset(timestamps), infoAddress, profilingAddress);
+    }
+
+    private native int clGetEventProfilingTimestamps0(long event, Object timestamps, int timestamps_byte_offset, long infoAddress, long profilingAddress);
+
     /** Interface to C language function: <br> <code> void *  {@native clEnqueueMapImage}(cl_command_queue command_queue, cl_mem image, uint32_t blocking_map, uint64_t map_flags, const size_t * , const size_t * , size_t *  image_row_pitch, size_t *  image_slice_pitch, uint32_t num_events_in_wait_list, cl_event *  event_wait_list, cl_event *  event, int32_t *  errcode_ret); </code>
     @param origin a direct {@link com.jogamp.common.nio.NativeSizeBuffer}
     @param range a direct {@link com.jogamp.common.nio.NativeSizeBuffer}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.util;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLWork;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Dependency graph of OpenCL commands. Nodes are transfers or kernel executions, edges are
+ * dependencies between them. The graph is compiled into a topological enqueue order with minimal
+ * event wait lists (redundant transitive dependencies are removed).
+ * <p>
+ * Enqueued on a single queue with {@link CLCommandQueue.Mode#OUT_OF_ORDER_MODE}, every command waits only
+ * for its direct dependencies. Enqueued on several in-order queues, independent chains are distributed
+ * across the queues and only dependencies between different queues are synchronized with events.
+ * </p>
+ * Example:
+ * <pre>
+ * CLCommandGraph graph = new CLCommandGraph();
+ * Node writeA = graph.putWriteBuffer(bufferA);
+ * Node writeB = graph.putWriteBuffer(bufferB);
+ * Node add    = graph.put1DRangeKernel(kernel, 0, size, 0).after(writeA, writeB);
+ * graph.putReadBuffer(bufferC).after(add);
+ *
+ * CLEventList done = graph.enqueue(queue);
+ * done.waitForEvents();
+ * done.release();
+ * </pre>
+ * @author Michael Bien
+ */
+public class CLCommandGraph {
+
+    private final List<Node> nodes;
+
+    // compiled state, invalidated on modification
+    private Node[] order;
+    private BitSet[] reduced;
+    private boolean[] hasDependants;
+
+    public CLCommandGraph() {
+        this.nodes = new ArrayList<Node>();
+    }
+
+    /**
+     * Adds a non-blocking write of the complete host buffer.
+     */
+    public Node putWriteBuffer(final CLBuffer<?> buffer) {
+        return add(new Node("write "+buffer) {
+            @Override void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) {
+                queue.putWriteBuffer(buffer, false, condition, events);
+            }
+        });
+    }
+
+    /**
+     * Adds a non-blocking read into the complete host buffer.
+     */
+    public Node putReadBuffer(final CLBuffer<?> buffer) {
+        return add(new Node("read "+buffer) {
+            @Override void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) {
+                queue.putReadBuffer(buffer, false, condition, events);
+            }
+        });
+    }
+
+    /**
+     * Adds a copy of the complete source buffer into the destination buffer.
+     */
+    public Node putCopyBuffer(final CLBuffer<?> src, final CLBuffer<?> dest) {
+        return add(new Node("copy "+src+" to "+dest) {
+            @Override void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) {
+                queue.putCopyBuffer(src, dest, 0, 0, src.getCLSize(), condition, events);
+            }
+        });
+    }
+
+    /**
+     * Adds a 1D kernel execution. The kernel arguments must be set before the graph is enqueued.
+     */
+    public Node put1DRangeKernel(final CLKernel kernel, final long globalWorkOffset, final long globalWorkSize, final long localWorkSize) {
+        return add(new Node("kernel "+kernel.name) {
+            @Override void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) {
+                queue.put1DRangeKernel(kernel, globalWorkOffset, globalWorkSize, localWorkSize, condition, events);
+            }
+        });
+    }
+
+    /**
+     * Adds the execution of the given work.
+     */
+    public Node putWork(final CLWork work) {
+        return add(new Node("work "+work.getKernel().name) {
+            @Override void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) {
+                queue.putWork(work, condition, events);
+            }
+        });
+    }
+
+    /**
+     * Adds a custom command.
+     */
+    public Node putCommand(final Command command) {
+        return add(new Node(command.toString()) {
+            @Override void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) {
+                command.enqueue(queue, condition, events);
+            }
+        });
+    }
+
+    private Node add(Node node) {
+        node.index = nodes.size();
+        nodes.add(node);
+        invalidate();
+        return node;
+    }
+
+    private void invalidate() {
+        order = null;
+    }
+
+    /**
+     * Computes the enqueue order and the minimal dependencies of every node.
+     * Compilation happens implicitly on enqueue, it only has to be repeated after the graph changed.
+     * @throws IllegalStateException if the graph contains a cycle.
+     */
+    public CLCommandGraph compile() {
+
+        int n = nodes.size();
+
+        // Kahn's algorithm
+        int[] pending = new int[n];
+        List<List<Node>> dependants = new ArrayList<List<Node>>(n);
+        for (int i = 0; i < n; i++) {
+            dependants.add(new ArrayList<Node>());
+        }
+        for (Node node : nodes) {
+            pending[node.index] = node.dependencies.size();
+            for (Node dependency : node.dependencies) {
+                dependants.get(dependency.index).add(node);
+            }
+        }
+
+        Node[] sorted = new Node[n];
+        int head = 0;
+        int tail = 0;
+        for (Node node : nodes) {
+            if(pending[node.index] == 0) {
+                sorted[tail++] = node;
+            }
+        }
+        while(head < tail) {
+            Node node = sorted[head++];
+            for (Node dependant : dependants.get(node.index)) {
+                if(--pending[dependant.index] == 0) {
+                    sorted[tail++] = dependant;
+                }
+            }
+        }
+        if(tail != n) {
+            throw new IllegalStateException("command graph contains a cycle");
+        }
+
+        // transitive closure in topological order
+        BitSet[] reachable = new BitSet[n]; // all transitive dependencies of a node
+        BitSet[] minimal = new BitSet[n];
+        boolean[] used = new boolean[n];
+        for (Node node : sorted) {
+            BitSet all = new BitSet(n);
+            for (Node dependency : node.dependencies) {
+                all.set(dependency.index);
+                all.or(reachable[dependency.index]);
+            }
+            reachable[node.index] = all;
+        }
+        // transitive reduction: drop dependencies which are implied by another dependency
+        for (Node node : sorted) {
+            BitSet direct = new BitSet(n);
+            for (Node dependency : node.dependencies) {
+                direct.set(dependency.index);
+            }
+            for (Node dependency : node.dependencies) {
+                direct.andNot(reachable[dependency.index]);
+            }
+            for (int i = direct.nextSetBit(0); i >= 0; i = direct.nextSetBit(i+1)) {
+                used[i] = true;
+            }
+            minimal[node.index] = direct;
+        }
+
+        this.order = sorted;
+        this.reduced = minimal;
+        this.hasDependants = used;
+        return this;
+    }
+
+    /**
+     * Enqueues the graph on the given queues and returns the events of all commands without dependants.
+     * A single queue must either be in order or enabled for out of order execution. Several queues are treated
+     * as in-order queues. The returned list must be released by the caller.
+     */
+    public CLEventList enqueue(CLCommandQueue... queues) {
+
+        if(queues.length == 0) {
+            throw new IllegalArgumentException("no queue given");
+        }
+        if(order == null) {
+            compile();
+        }
+
+        int n = order.length;
+        boolean outOfOrder = queues.length == 1 && queues[0].isOutOfOrderModeEnabled();
+
+        // queue assignment, in-order queues keep dependency chains on the same queue
+        int[] queueOf = new int[n];
+        int[] tailOf = new int[queues.length];
+        int[] load = new int[queues.length];
+        for (int i = 0; i < queues.length; i++) {
+            tailOf[i] = -1;
+        }
+        for (Node node : order) {
+            int q = -1;
+            BitSet deps = reduced[node.index];
+            for (int d = deps.nextSetBit(0); d >= 0 && q < 0; d = deps.nextSetBit(d+1)) {
+                if(tailOf[queueOf[d]] == d) {
+                    q = queueOf[d];
+                }
+            }
+            if(q < 0) {
+                q = 0;
+                for (int i = 1; i < queues.length; i++) {
+                    if(load[i] < load[q]) {
+                        q = i;
+                    }
+                }
+            }
+            queueOf[node.index] = q;
+            tailOf[q] = node.index;
+            load[q]++;
+        }
+
+        CLEventList[] events = new CLEventList[n];
+        List<CLEvent> sinks = new ArrayList<CLEvent>();
+        try{
+            for (Node node : order) {
+                int i = node.index;
+
+                // wait list: minimal dependencies, on in-order queues only those of other queues
+                List<CLEvent> waitFor = null;
+                BitSet deps = reduced[i];
+                for (int d = deps.nextSetBit(0); d >= 0; d = deps.nextSetBit(d+1)) {
+                    if(outOfOrder || queueOf[d] != queueOf[i]) {
+                        if(waitFor == null) {
+                            waitFor = new ArrayList<CLEvent>(deps.cardinality());
+                        }
+                        waitFor.add(events[d].getEvent(0));
+                    }
+                }
+                CLEventList condition = waitFor == null ? null : new CLEventList(waitFor.toArray(new CLEvent[waitFor.size()]));
+
+                boolean sink = !hasDependants[i];
+                boolean needsEvent = sink || outOfOrder || queues.length > 1;
+                if(needsEvent) {
+                    events[i] = new CLEventList(1);
+                }
+
+                node.enqueue(queues[queueOf[i]], condition, events[i]);
+
+                if(sink) {
+                    sinks.add(events[i].getEvent(0));
+                }
+            }
+        }finally{
+            // events of inner nodes are no longer needed once all commands are enqueued
+            for (Node node : order) {
+                if(hasDependants[node.index] && events[node.index] != null) {
+                    events[node.index].release();
+                }
+            }
+        }
+
+        for (CLCommandQueue queue : queues) {
+            queue.flush();
+        }
+
+        return new CLEventList(sinks.toArray(new CLEvent[sinks.size()]));
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the minimal number of dependencies of the given node after compilation.
+     */
+    public int getMinimalDependencyCount(Node node) {
+        if(order == null) {
+            compile();
+        }
+        return reduced[node.index].cardinality();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [nodes: "+nodes.size()+"]";
+    }
+
+    /**
+     * A custom command of a {@link CLCommandGraph}.
+     */
+    public interface Command {
+
+        /**
+         * Enqueues this command waiting for the condition list and creating an event in the event list if not null.
+         */
+        public void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events);
+
+    }
+
+    /**
+     * A command in the graph.
+     */
+    public abstract class Node {
+
+        private final String name;
+        private final List<Node> dependencies;
+        private int index;
+
+        private Node(String name) {
+            this.name = name;
+            this.dependencies = new ArrayList<Node>(2);
+        }
+
+        abstract void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events);
+
+        /**
+         * Declares that this command must be executed after the given commands.
+         */
+        public Node after(Node... nodes) {
+            for (Node node : nodes) {
+                if(node.getGraph() != CLCommandGraph.this) {
+                    throw new IllegalArgumentException(node+" belongs to a different graph");
+                }
+                if(node == this) {
+                    throw new IllegalArgumentException("node can not depend on itself");
+                }
+                if(!dependencies.contains(node)) {
+                    dependencies.add(node);
+                }
+            }
+            invalidate();
+            return this;
+        }
+
+        private CLCommandGraph getGraph() {
+            return CLCommandGraph.this;
+        }
+
+        @Override
+        public String toString() {
+            return "Node ["+name+"]";
+        }
+    }
+
+}
@@ -53,7 +53,7 @@ public class CLDeviceFilters {
                 if(set.contains(CLDevice.Type.ALL)) {
                     return true;
                 }
-                return set.contains(item.getType());
+                return set.contains(item.snapshot().getType());
             }
         };
     }
@@ -64,7 +64,7 @@ public class CLDeviceFilters {
     public static Filter<CLDevice> byteOrder(final ByteOrder order) {
         return new Filter<CLDevice>() {
             public boolean accept(CLDevice item) {
-                return item.getByteOrder().equals(order);
+                return item.snapshot().getByteOrder().equals(order);
             }
         };
     }
@@ -75,7 +75,7 @@ public class CLDeviceFilters {
     public static Filter<CLDevice> glSharing() {
         return new Filter<CLDevice>() {
             public boolean accept(CLDevice item) {
-                return item.isGLMemorySharingSupported();
+                return item.snapshot().isGLMemorySharingSupported();
             }
         };
     }
@@ -87,7 +87,7 @@ public class CLDeviceFilters {
         return new Filter<CLDevice>() {
             private final List<String> extensionList = Arrays.asList(extensions);
             public boolean accept(CLDevice item) {
-                return item.getExtensions().containsAll(extensionList);
+                return item.snapshot().getExtensions().containsAll(extensionList);
             }
         };
     }
@@ -99,7 +99,7 @@ public class CLDeviceFilters {
         return new Filter<CLDevice>() {
             private final List<Mode> modeList = Arrays.asList(modes);
             public boolean accept(CLDevice item) {
-                return item.getQueueProperties().containsAll(modeList);
+                return item.snapshot().getQueueProperties().containsAll(modeList);
             }
         };
     }
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.util;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLDeviceSnapshot;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Ranks devices by short compute, bandwidth and latency microbenchmarks instead of
+ * the compute units times clock frequency heuristic of {@link CLPlatform#getMaxFlopsDevice()}.
+ * <p>
+ * Each device is benchmarked once, scores are cached by platform, device name, vendor and driver version.
+ * If the ranking was created with a file, scores are loaded from and saved to it.
+ * </p>
+ * <p><pre>
+ *     CLDeviceRanking ranking = new CLDeviceRanking(new File(cacheDir, "devices.properties"));
+ *     CLDevice[] devices = CLPlatform.getDefault().listCLDevices(ranking.top(1));
+ *     CLMultiContext mc = CLMultiContext.create(allDevices, ranking.order());
+ * </pre></p>
+ * @author Michael Bien
+ */
+public class CLDeviceRanking {
+
+    private static final String SOURCE =
+          "kernel void rankCompute(global float* out, float a, float b) {     \n"
+        + "    float x = (float)get_global_id(0);                             \n"
+        + "    float y = a;                                                   \n"
+        + "    for(int i = 0; i < "+Score.ITERATIONS+"; i++) {                \n"
+        + "        x = mad(x, a, b);                                          \n"
+        + "        y = mad(y, b, a);                                          \n"
+        + "    }                                                              \n"
+        + "    out[get_global_id(0)] = x + y;                                 \n"
+        + "}                                                                  \n"
+        + "kernel void rankLatency(global float* out) { }                     \n";
+
+    private static final int COMPUTE_ITEMS = 1 << 20;
+    private static final int TRANSFER_BYTES = 16 * 1024 * 1024;
+    private static final int LATENCY_LAUNCHES = 32;
+    private static final int RUNS = 3;
+
+    private final File file;
+    private final Map<String, Score> scores;
+
+    /**
+     * Creates a ranking keeping scores in memory only.
+     */
+    public CLDeviceRanking() {
+        this.file = null;
+        this.scores = new HashMap<String, Score>();
+    }
+
+    /**
+     * Creates a ranking storing its scores in the given file. Existing scores are loaded.
+     */
+    public CLDeviceRanking(File file) throws IOException {
+        this.file = file;
+        this.scores = new HashMap<String, Score>();
+        if(file.isFile()) {
+            load(file);
+        }
+    }
+
+    /**
+     * Returns the score of the device, runs the benchmarks if the device was not benchmarked yet.
+     */
+    public synchronized Score score(CLDevice device) {
+        String key = key(device);
+        Score score = scores.get(key);
+        if(score == null) {
+            score = benchmark(device);
+            scores.put(key, score);
+            if(file != null) {
+                try{
+                    save(file);
+                }catch(IOException ex) {
+                    // scores stay in memory
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Runs the benchmarks on the device without using or updating the cache.
+     */
+    public static Score benchmark(CLDevice device) {
+
+        // creating a context binds the device object to it, use a fresh one to keep the callers binding
+        for (CLDevice candidate : device.getPlatform().listCLDevices()) {
+            if(candidate.equals(device)) {
+                device = candidate;
+                break;
+            }
+        }
+
+        CLContext context = CLContext.create(device);
+        try{
+            CLCommandQueue queue = device.createCommandQueue();
+            CLProgram program = context.createProgram(SOURCE).build();
+
+            // compute
+            CLBuffer<?> out = context.createBuffer(COMPUTE_ITEMS * 4, WRITE_ONLY);
+            CLKernel compute = program.createCLKernel("rankCompute").putArg(out).putArg(1.0001f).putArg(0.0001f);
+            queue.put1DRangeKernel(compute, 0, COMPUTE_ITEMS, 0).finish(); // warmup
+
+            long computeTime = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                queue.put1DRangeKernel(compute, 0, COMPUTE_ITEMS, 0).finish();
+                computeTime = Math.min(computeTime, System.nanoTime() - start);
+            }
+            double flops = (double)COMPUTE_ITEMS * Score.ITERATIONS * 4 / (computeTime / 1e9);
+
+            // bandwidth
+            CLBuffer<ByteBuffer> transfer = context.createByteBuffer(TRANSFER_BYTES, READ_WRITE);
+            queue.putWriteBuffer(transfer, true); // warmup
+
+            long transferTime = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                queue.putWriteBuffer(transfer, true).putReadBuffer(transfer, true);
+                transferTime = Math.min(transferTime, System.nanoTime() - start);
+            }
+            double bandwidth = 2.0 * TRANSFER_BYTES / (transferTime / 1e9);
+
+            // latency
+            CLKernel nop = program.createCLKernel("rankLatency").putArg(out);
+            queue.put1DRangeKernel(nop, 0, 1, 0).finish(); // warmup
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LATENCY_LAUNCHES; i++) {
+                queue.put1DRangeKernel(nop, 0, 1, 0).finish();
+            }
+            double latency = (System.nanoTime() - start) / (double)LATENCY_LAUNCHES;
+
+            return new Score(flops, bandwidth, latency);
+        }finally{
+            context.release();
+        }
+    }
+
+    /**
+     * Returns the best device of the given devices.
+     */
+    public CLDevice best(CLDevice... devices) {
+        if(devices.length == 0) {
+            throw new IllegalArgumentException("device array was empty");
+        }
+        List<CLDevice> list = new ArrayList<CLDevice>(Arrays.asList(devices));
+        Collections.sort(list, order());
+        return list.get(0);
+    }
+
+    /**
+     * Returns a comparator sorting devices from the highest to the lowest score.
+     */
+    public Comparator<CLDevice> order() {
+        return new Comparator<CLDevice>() {
+            @Override public int compare(CLDevice a, CLDevice b) {
+                return Double.compare(score(b).getScore(), score(a).getScore());
+            }
+        };
+    }
+
+    /**
+     * Accepts the <code>count</code> best devices of all platforms.
+     */
+    public Filter<CLDevice> top(final int count) {
+        if(count < 1) {
+            throw new IllegalArgumentException("count must be at least one but was "+count);
+        }
+        return new Filter<CLDevice>() {
+            private List<CLDevice> best;
+            public synchronized boolean accept(CLDevice item) {
+                if(best == null) {
+                    List<CLDevice> all = new ArrayList<CLDevice>();
+                    for (CLPlatform platform : CLPlatform.listCLPlatforms()) {
+                        all.addAll(Arrays.asList(platform.listCLDevices()));
+                    }
+                    Collections.sort(all, order());
+                    best = all.subList(0, Math.min(count, all.size()));
+                }
+                return best.contains(item);
+            }
+        };
+    }
+
+    /**
+     * Accepts devices scoring at least the given fraction of the best device of all platforms.
+     */
+    public Filter<CLDevice> atLeast(final double fraction) {
+        return new Filter<CLDevice>() {
+            private double bestScore = -1;
+            public synchronized boolean accept(CLDevice item) {
+                if(bestScore < 0) {
+                    for (CLPlatform platform : CLPlatform.listCLPlatforms()) {
+                        for (CLDevice device : platform.listCLDevices()) {
+                            bestScore = Math.max(bestScore, score(device).getScore());
+                        }
+                    }
+                }
+                return score(item).getScore() >= fraction * bestScore;
+            }
+        };
+    }
+
+    /**
+     * Removes all scores, devices are benchmarked again on next use.
+     */
+    public synchronized void clear() {
+        scores.clear();
+    }
+
+    /**
+     * Loads scores from the given file and adds them to the scores of this ranking.
+     */
+    public final synchronized void load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try{
+            properties.load(in);
+        }finally{
+            in.close();
+        }
+        for (String key : properties.stringPropertyNames()) {
+            try{
+                scores.put(key, Score.parse(properties.getProperty(key)));
+            }catch(IllegalArgumentException ex) {
+                // skip corrupt entries
+            }
+        }
+    }
+
+    /**
+     * Saves all scores to the given file. The file is written to a temporary file first and moved into place afterwards.
+     * @see CLUtil#writeFile(File, byte[])
+     */
+    public synchronized void save(File file) throws IOException {
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Score> entry : scores.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().format());
+        }
+
+        CLUtil.storeProperties(file, properties, "OpenCL device scores");
+    }
+
+    private static String key(CLDevice device) {
+        CLDeviceSnapshot snapshot = device.snapshot();
+        return device.getPlatform().getName()+'|'+snapshot.getName()+'|'+snapshot.getVendor()+'|'+snapshot.getDriverVersion();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName()+" [scores: "+scores.size()+", file: "+file+"]";
+    }
+
+    /**
+     * Benchmark results of a device.
+     */
+    public static final class Score {
+
+        private static final int ITERATIONS = 256;
+
+        /**
+         * Single precision floating point operations per second.
+         */
+        public final double flops;
+
+        /**
+         * Host to device and back transfer rate in bytes per second.
+         */
+        public final double bandwidth;
+
+        /**
+         * Round trip time of an empty kernel launch in nanoseconds.
+         */
+        public final double latency;
+
+        Score(double flops, double bandwidth, double latency) {
+            this.flops = flops;
+            this.bandwidth = bandwidth;
+            this.latency = latency;
+        }
+
+        /**
+         * Returns the combined score, the inverse of the estimated time in seconds for a reference
+         * workload of one GFLOP, 256 MB of transfers and 100 kernel launches. Higher is better.
+         */
+        public double getScore() {
+            double time = 1e9 / flops + 256e6 / bandwidth + 100 * latency / 1e9;
+            return 1 / time;
+        }
+
+        private String format() {
+            return flops+","+bandwidth+","+latency;
+        }
+
+        private static Score parse(String value) {
+            String[] parts = value.split(",");
+            if(parts.length != 3) {
+                throw new IllegalArgumentException("invalid score: "+value);
+            }
+            return new Score(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName()+String.format(" [score: %.3f, %.2f GFLOPS, %.2f GB/s, %.1f us latency]",
+                    getScore(), flops/1e9, bandwidth/1e9, latency/1e3);
+        }
+
+    }
+
+}
@@ -3,17 +3,27 @@
  */
 package com.jogamp.opencl.util;
 
+import com.jogamp.common.JogampRuntimeException;
 import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
 import com.jogamp.opencl.CLResource;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.*;
 import static com.jogamp.opencl.CLDevice.Type.*;
@@ -65,9 +75,21 @@ public class CLMultiContext implements CLResource {
         return create(devices);
     }
 
+    /**
+     * Creates a multi context with the specified devices, contexts are ordered by the given device order.
+     * The devices don't have to be from the same platform.
+     * @see CLDeviceRanking#order()
+     */
+    public static CLMultiContext create(Collection<? extends CLDevice> devices, Comparator<? super CLDevice> order) {
+        List<CLDevice> sorted = new ArrayList<CLDevice>(devices);
+        Collections.sort(sorted, order);
+        return create(sorted);
+    }
+
     /**
      * Creates a multi context with the specified devices.
      * The devices don't have to be from the same platform.
+     * Contexts are created in the order of the devices.
      */
     public static CLMultiContext create(Collection<? extends CLDevice> devices) {
 
@@ -79,10 +101,10 @@ public class CLMultiContext implements CLResource {
 
         // create contexts
         CLMultiContext mc = new CLMultiContext();
-        for (Map.Entry<CLPlatform, List<CLDevice>> entry : platformDevicesMap.entrySet()) {
-            List<CLDevice> list = entry.getValue();
+        for (CLDevice device : devices) {
+            List<CLDevice> list = platformDevicesMap.get(device.getPlatform());
             // one context per device to workaround driver bugs
-            for (CLDevice device : list) {
+            if(list != null && list.remove(device)) {
                 CLContext context = CLContext.create(device);
                 mc.contexts.add(context);
             }
@@ -147,6 +169,94 @@ public class CLMultiContext implements CLResource {
         contexts.clear();
     }
 
+    /**
+     * Creates the program in every context and builds them on the executor.
+     * The returned futures are in the same order as the contexts.
+     * @see CLProgram#buildAsync(java.util.concurrent.Executor, java.lang.String, com.jogamp.opencl.CLDevice[])
+     * @see CLProgram#setBuildConcurrency(com.jogamp.opencl.CLProgram.BuildScope, int)
+     */
+    public List<Future<CLProgram>> buildPrograms(Executor executor, String source, String options) {
+        List<Future<CLProgram>> futures = new ArrayList<Future<CLProgram>>(contexts.size());
+        for (CLContext context : contexts) {
+            futures.add(context.createProgram(source).buildAsync(executor, options));
+        }
+        return futures;
+    }
+
+    /**
+     * Creates the program in every context and builds them concurrently, one thread per context.
+     * Returns the built programs in the same order as the contexts.
+     * Builds only overlap if the build concurrency policy allows it, which is not the case by default.
+     * If a build fails, pending builds are dropped, running builds are awaited and all programs are released
+     * before the exception is rethrown.
+     * @see CLProgram#setBuildConcurrency(com.jogamp.opencl.CLProgram.BuildScope, int)
+     */
+    public List<CLProgram> buildPrograms(String source, String options) {
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, contexts.size()), new ThreadFactory() {
+            private int count = 0;
+            @Override public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CLMultiContext-build-"+(count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        List<CLProgram> programs = new ArrayList<CLProgram>(contexts.size());
+        List<Future<CLProgram>> futures = new ArrayList<Future<CLProgram>>(contexts.size());
+        boolean built = false;
+        try{
+            for (CLContext context : contexts) {
+                CLProgram program = context.createProgram(source);
+                programs.add(program);
+                futures.add(program.buildAsync(executor, options));
+            }
+            for (Future<CLProgram> future : futures) {
+                future.get();
+            }
+            built = true;
+            return programs;
+        }catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JogampRuntimeException("interrupted while building programs", ex);
+        }catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new JogampRuntimeException("program build failed", cause);
+        }finally{
+            if(built) {
+                executor.shutdown();
+            }else{
+                // drop pending builds, programs must not be released while they are built
+                executor.shutdownNow();
+                awaitTermination(executor);
+                for (CLProgram program : programs) {
+                    program.release();
+                }
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while(true) {
+            try{
+                if(executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            }catch(InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public List<CLContext> getContexts() {
         return Collections.unmodifiableList(contexts);
     }
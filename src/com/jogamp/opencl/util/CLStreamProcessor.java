@@ -0,0 +1,352 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.util;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLMemory.Mem;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+
+/**
+ * Processes host data which does not fit into device memory in device sized tiles.
+ * <p>
+ * The source is sliced into tiles which are uploaded, processed by a {@link TileKernel} and downloaded
+ * into rotating buffer slots. While the host fills tile N+1, the device computes tile N and the result
+ * of tile N-1 is transferred back. Uploads, kernels and downloads are enqueued on up to three separate
+ * queues synchronized with events, which allows devices with independent copy engines to overlap all three stages.
+ * </p>
+ * Example:
+ * <pre>
+ * CLStreamProcessor processor = new CLStreamProcessor(tileSize, tileSize, 3, uploadQueue, computeQueue, downloadQueue);
+ * processor.process(CLStreamProcessor.fromChannel(channel), kernel, sink);
+ * processor.release();
+ * </pre>
+ * @author Michael Bien
+ */
+public class CLStreamProcessor {
+
+    private final CLCommandQueue upload;
+    private final CLCommandQueue compute;
+    private final CLCommandQueue download;
+
+    private final int inputTileSize;
+    private final int outputTileSize;
+    private final Slot[] slots;
+
+    /**
+     * Creates a stream processor with the given number of rotating slots.
+     * @param queues one to three queues of the same context used for uploads, kernels and downloads, in that order.
+     */
+    public CLStreamProcessor(int inputTileSize, int outputTileSize, int slots, CLCommandQueue... queues) {
+        if(queues.length < 1 || queues.length > 3) {
+            throw new IllegalArgumentException("one to three queues expected but got "+queues.length);
+        }
+        if(inputTileSize <= 0 || outputTileSize <= 0) {
+            throw new IllegalArgumentException("tile sizes must be positive but were "+inputTileSize+", "+outputTileSize);
+        }
+        if(slots < 2) {
+            throw new IllegalArgumentException("at least two slots are required but got "+slots);
+        }
+        this.upload = queues[0];
+        this.compute = queues[1 % queues.length];
+        this.download = queues[2 % queues.length];
+        this.inputTileSize = inputTileSize;
+        this.outputTileSize = outputTileSize;
+
+        CLContext context = upload.getContext();
+        this.slots = new Slot[slots];
+        for (int i = 0; i < slots; i++) {
+            this.slots[i] = new Slot(context.createByteBuffer(inputTileSize, Mem.READ_ONLY),
+                                     context.createByteBuffer(outputTileSize, Mem.WRITE_ONLY));
+        }
+    }
+
+    /**
+     * Returns a tile size which allows the given number of slots with input and output buffers of equal size
+     * to reside in device memory at the same time while staying within the maximum allocation size.
+     */
+    public static int getDefaultTileSize(CLDevice device, int slots) {
+        long size = Math.min(device.getMaxMemAllocSize(), device.getGlobalMemSize() / (4L*slots));
+        return (int)Math.min(size, Integer.MAX_VALUE & ~4095);
+    }
+
+    /**
+     * Streams the complete source through the device.
+     * @return the number of processed tiles.
+     * @throws IOException when reading the source failed.
+     */
+    public long process(Source source, TileKernel kernel, TileSink sink) throws IOException {
+
+        long tile = 0;
+        boolean done = false;
+        try{
+            while(true) {
+                Slot slot = slots[(int)(tile % slots.length)];
+
+                // the slot is reused, its previous tile must be downloaded first
+                if(slot.tile >= 0) {
+                    complete(slot, sink);
+                }
+
+                ByteBuffer input = slot.input.getBuffer();
+                input.clear();
+                int bytes = source.read(input);
+                if(bytes <= 0) {
+                    break;
+                }
+                input.rewind();
+
+                slot.tile = tile;
+
+                upload.putWriteBuffer(slot.input, 0, bytes, false, slot.uploaded);
+                int outputBytes = kernel.enqueue(compute, slot.input, slot.output, bytes, tile, slot.uploaded, slot.computed);
+                if(outputBytes <= 0 || outputBytes > outputTileSize) {
+                    throw new IllegalStateException("output size of tile "+tile+" out of range [1, "+outputTileSize+"]: "+outputBytes);
+                }
+                slot.bytes = outputBytes;
+                download.putReadBuffer(slot.output, 0, outputBytes, false, slot.computed, slot.downloaded);
+
+                upload.flush();
+                if(compute != upload) {
+                    compute.flush();
+                }
+                if(download != compute && download != upload) {
+                    download.flush();
+                }
+                tile++;
+            }
+
+            // drain in tile order
+            for (int i = 0; i < slots.length; i++) {
+                Slot slot = slots[(int)((tile+i) % slots.length)];
+                if(slot.tile >= 0) {
+                    complete(slot, sink);
+                }
+            }
+            done = true;
+        }finally{
+            if(!done) {
+                // commands of the failed iteration may still use the slots and their events
+                finishQuietly(upload);
+                finishQuietly(compute);
+                finishQuietly(download);
+            }
+            for (Slot slot : slots) {
+                slot.reset();
+            }
+        }
+        return tile;
+    }
+
+    private void complete(Slot slot, TileSink sink) {
+        slot.downloaded.waitForEvents();
+        ByteBuffer output = slot.output.getBuffer();
+        output.clear().limit(slot.bytes);
+        sink.consume(output, slot.tile, slot.bytes);
+        slot.reset();
+    }
+
+    private static void finishQuietly(CLCommandQueue queue) {
+        try{
+            queue.finish();
+        }catch(RuntimeException ignore) {
+            // keep the original exception
+        }
+    }
+
+    public int getInputTileSize() {
+        return inputTileSize;
+    }
+
+    public int getOutputTileSize() {
+        return outputTileSize;
+    }
+
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Releases all device buffers of this processor.
+     */
+    public void release() {
+        for (Slot slot : slots) {
+            slot.input.release();
+            slot.output.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [slots: "+slots.length+", input: "+inputTileSize+", output: "+outputTileSize+"]";
+    }
+
+    /**
+     * Returns a source reading the remaining bytes of the buffer.
+     */
+    public static Source fromBuffer(final ByteBuffer buffer) {
+        final ByteBuffer remaining = buffer.duplicate();
+        return new Source() {
+            @Override public int read(ByteBuffer dest) {
+                int bytes = Math.min(dest.remaining(), remaining.remaining());
+                ByteBuffer slice = remaining.duplicate();
+                slice.limit(slice.position()+bytes);
+                dest.put(slice);
+                remaining.position(remaining.position()+bytes);
+                return bytes;
+            }
+        };
+    }
+
+    /**
+     * Returns a source reading the channel until end of stream, for example a {@link java.nio.channels.FileChannel}.
+     */
+    public static Source fromChannel(final ReadableByteChannel channel) {
+        return new Source() {
+            @Override public int read(ByteBuffer dest) throws IOException {
+                int bytes = 0;
+                while(dest.hasRemaining()) {
+                    int n = channel.read(dest);
+                    if(n < 0) {
+                        break;
+                    }
+                    bytes += n;
+                }
+                return bytes;
+            }
+        };
+    }
+
+    /**
+     * Returns a source concatenating the remaining bytes of all chunks. Chunks may be larger or smaller than a tile.
+     */
+    public static Source fromChunks(final Iterator<ByteBuffer> chunks) {
+        return new Source() {
+            private ByteBuffer current;
+            @Override public int read(ByteBuffer dest) {
+                int bytes = 0;
+                while(dest.hasRemaining()) {
+                    if(current == null || !current.hasRemaining()) {
+                        if(!chunks.hasNext()) {
+                            break;
+                        }
+                        current = chunks.next().duplicate();
+                        continue;
+                    }
+                    int n = Math.min(dest.remaining(), current.remaining());
+                    ByteBuffer slice = current.duplicate();
+                    slice.limit(slice.position()+n);
+                    dest.put(slice);
+                    current.position(current.position()+n);
+                    bytes += n;
+                }
+                return bytes;
+            }
+        };
+    }
+
+    private static final class Slot {
+
+        private final CLBuffer<ByteBuffer> input;
+        private final CLBuffer<ByteBuffer> output;
+
+        private final CLEventList uploaded;
+        private final CLEventList computed;
+        private final CLEventList downloaded;
+
+        private long tile;
+        private int bytes;
+
+        private Slot(CLBuffer<ByteBuffer> input, CLBuffer<ByteBuffer> output) {
+            this.input = input;
+            this.output = output;
+            this.uploaded = new CLEventList(1);
+            this.computed = new CLEventList(1);
+            this.downloaded = new CLEventList(1);
+            this.tile = -1;
+        }
+
+        private void reset() {
+            uploaded.release();
+            computed.release();
+            downloaded.release();
+            tile = -1;
+        }
+    }
+
+    /**
+     * Source of the streamed data.
+     */
+    public interface Source {
+
+        /**
+         * Fills the remaining space of the tile buffer.
+         * @return the number of bytes read, zero or less at the end of the source.
+         */
+        public int read(ByteBuffer dest) throws IOException;
+
+    }
+
+    /**
+     * Enqueues the computation of one tile.
+     */
+    public interface TileKernel {
+
+        /**
+         * Enqueues the kernel(s) processing the tile. Kernels must wait for the condition list
+         * and the last enqueued command must create an event in the events list.
+         * @param bytes number of valid bytes in the input buffer, less than the tile size only for the last tile.
+         * @return number of valid bytes in the output buffer, positive and at most the output tile size.
+         */
+        public int enqueue(CLCommandQueue queue, CLBuffer<ByteBuffer> input, CLBuffer<ByteBuffer> output,
+                            int bytes, long tile, CLEventList condition, CLEventList events);
+
+    }
+
+    /**
+     * Receives the downloaded output of a tile.
+     */
+    public interface TileSink {
+
+        /**
+         * Called on the processing thread once the output of the tile has been read back.
+         * The buffer is reused after this method returned.
+         * @param bytes number of valid bytes in the output buffer as returned by the {@link TileKernel}.
+         */
+        public void consume(ByteBuffer output, long tile, int bytes);
+
+    }
+
+}
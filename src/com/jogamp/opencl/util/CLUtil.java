@@ -33,17 +33,25 @@ import com.jogamp.opencl.llb.CL;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLPlatform;
 import com.jogamp.opencl.CLProperty;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 /**
  *
@@ -108,6 +116,98 @@ public class CLUtil {
         return dest;
     }
 
+    /**
+     * Writes the bytes to a temporary file next to the given file and moves it into place afterwards,
+     * readers never see a partially written file. Missing parent directories are created.
+     * <p>
+     * {@link File#renameTo(File)} does not replace existing files on all platforms (e.g. Windows).
+     * In that case the old file is deleted before the move, which is not atomic: a concurrent reader may
+     * find no file for a moment and a concurrent writer may win the race, the last complete write is kept.
+     * </p>
+     */
+    public static void writeFile(File file, byte[] bytes) throws IOException {
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can not create directory "+dir);
+        }
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try{
+            OutputStream out = new FileOutputStream(tmp);
+            try{
+                out.write(bytes);
+            }finally{
+                out.close();
+            }
+            if(!tmp.renameTo(file)) {
+                file.delete();
+                if(!tmp.renameTo(file)) {
+                    throw new IOException("can not move "+tmp+" to "+file);
+                }
+            }
+        }finally{
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Stores the properties with {@link #writeFile(File, byte[])}.
+     */
+    public static void storeProperties(File file, Properties properties, String comment) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, comment);
+        writeFile(file, out.toByteArray());
+    }
+
+    /**
+     * Returns the SHA-1 hash of the UTF-8 encoded values as lower case hex string.
+     * Values are zero separated, ("ab", "c") and ("a", "bc") have different hashes.
+     */
+    public static String sha1(String... values) {
+        try{
+            MessageDigest digest = sha1Digest();
+            for (String value : values) {
+                digest.update(value.getBytes("UTF-8"));
+                digest.update((byte)0);
+            }
+            return toHex(digest.digest());
+        }catch(UnsupportedEncodingException ex) {
+            throw new JogampRuntimeException("UTF-8 not available", ex);
+        }
+    }
+
+    /**
+     * Returns the SHA-1 hash of the values as lower case hex string.
+     * Each value is prefixed with its length, ({1, 2}, {3}) and ({1}, {2, 3}) have different hashes.
+     */
+    public static String sha1(byte[]... values) {
+        MessageDigest digest = sha1Digest();
+        for (byte[] value : values) {
+            int length = value.length;
+            digest.update(new byte[] {(byte)(length >>> 24), (byte)(length >>> 16), (byte)(length >>> 8), (byte)length});
+            digest.update(value);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha1Digest() {
+        try{
+            return MessageDigest.getInstance("SHA-1");
+        }catch(NoSuchAlgorithmException ex) {
+            throw new JogampRuntimeException("SHA-1 not available", ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length*2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
     /**
      * Reads all platform properties and returns them as key-value map.
      */
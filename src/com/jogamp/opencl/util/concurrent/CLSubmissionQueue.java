@@ -0,0 +1,332 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.opencl.util.concurrent;
+
+import com.jogamp.opencl.CLCommandQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread safe, lock free submission front-end of a {@link CLCommandQueue}.
+ * <p>
+ * A {@link CLCommandQueue} is not thread safe since it reuses internal scratch buffers for every enqueue.
+ * CLSubmissionQueue accepts {@link Submission}s from any number of producer threads through a bounded
+ * multi-producer, single-consumer ring buffer. A single owner thread drains the ring in batches,
+ * enqueues the commands on the native queue and flushes once per batch.
+ * </p>
+ * The owner thread is either started with {@link #start()} or the ring is drained explicitly
+ * by one thread calling {@link #drain()}.
+ * <p>
+ * A submission throwing a RuntimeException does not affect the rest of its batch, the exception is
+ * counted and the first one is kept (see {@link #getSubmissionFailure()}). Once the owner thread
+ * terminated abnormally or {@link #shutdown()} was called, no further submissions are accepted.
+ * </p>
+ * @author Michael Bien
+ */
+public class CLSubmissionQueue {
+
+    // set in tail once shut down, slots can't be claimed afterwards
+    private final static long CLOSED = 1L << 62;
+
+    private final CLCommandQueue queue;
+
+    private final int mask;
+    private final int batchSize;
+    private final AtomicReferenceArray<Submission> slots;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail;  // next slot claimed by producers, | CLOSED after shutdown
+    private long head;              // next slot read by the consumer, owned by the consumer
+
+    private final AtomicLong drained;
+    private final AtomicLong failed;
+    private volatile Throwable failure;
+    private volatile RuntimeException submissionFailure;
+    private volatile boolean closed;
+
+    private volatile Thread owner;
+    private volatile boolean parked;
+    private volatile boolean running;
+
+    /**
+     * Creates a submission queue for the given command queue.
+     * @param capacity size of the ring, rounded up to the next power of two.
+     * @param batchSize maximum number of submissions enqueued between two flushes.
+     */
+    public CLSubmissionQueue(CLCommandQueue queue, int capacity, int batchSize) {
+        if(capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive but were "+capacity+", "+batchSize);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) {
+            size <<= 1;
+        }
+        this.queue = queue;
+        this.mask = size-1;
+        this.batchSize = batchSize;
+        this.slots = new AtomicReferenceArray<Submission>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.tail = new AtomicLong();
+        this.drained = new AtomicLong();
+        this.failed = new AtomicLong();
+    }
+
+    /**
+     * Tries to post the submission without blocking.
+     * @return false if the ring is full.
+     * @throws IllegalStateException if the owner thread terminated or the queue was shut down.
+     */
+    public boolean offer(Submission submission) {
+        if(submission == null) {
+            throw new IllegalArgumentException("submission was null");
+        }
+        while(true) {
+            checkAccepting();
+            long pos = tail.get();
+            if((pos & CLOSED) != 0) {
+                throw new IllegalStateException(this+" was shut down");
+            }
+            int index = (int)(pos & mask);
+            long seq = sequences.get(index);
+            if(seq == pos) {
+                if(tail.compareAndSet(pos, pos+1)) {
+                    slots.lazySet(index, submission);
+                    sequences.set(index, pos+1); // publish
+                    if(parked) {
+                        LockSupport.unpark(owner);
+                    }
+                    return true;
+                }
+            }else if(seq < pos) {
+                return false; // full
+            }
+        }
+    }
+
+    /**
+     * Posts the submission, waiting for free space in the ring if necessary.
+     * @throws IllegalStateException if the owner thread terminated or the queue was shut down.
+     */
+    public void submit(Submission submission) throws InterruptedException {
+        while(!offer(submission)) {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.yield();
+        }
+    }
+
+    private void checkAccepting() {
+        Throwable cause = failure;
+        if(cause != null) {
+            throw new IllegalStateException("owner thread of "+this+" terminated", cause);
+        }
+        if(closed) {
+            throw new IllegalStateException(this+" was shut down");
+        }
+    }
+
+    /**
+     * Enqueues up to one batch of pending submissions on the command queue and flushes the queue if
+     * at least one submission was enqueued. Must only be called by one thread at a time.
+     * @return the number of enqueued submissions.
+     */
+    public int drain() {
+        int count = 0;
+        try{
+            while(count < batchSize) {
+                int index = (int)(head & mask);
+                if(sequences.get(index) != head+1) {
+                    break; // empty or not yet published
+                }
+                Submission submission = slots.get(index);
+                slots.lazySet(index, null);
+                sequences.set(index, head+mask+1); // free slot for the next round
+                head++;
+                count++;
+                try{
+                    submission.submit(queue);
+                }catch(RuntimeException ex) {
+                    if(failed.getAndIncrement() == 0) {
+                        submissionFailure = ex;
+                    }
+                }
+            }
+        }finally{
+            if(count > 0) {
+                drained.addAndGet(count);
+                queue.flush();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Starts a daemon owner thread draining this submission queue until {@link #shutdown()} is called.
+     */
+    public synchronized CLSubmissionQueue start() {
+        if(owner != null) {
+            throw new IllegalStateException("owner thread already started");
+        }
+        running = true;
+        owner = new Thread(new Runnable() {
+            @Override public void run() {
+                try{
+                    while(running) {
+                        if(drain() == 0) {
+                            parked = true;
+                            if(isEmpty() && running) {
+                                LockSupport.parkNanos(CLSubmissionQueue.this, TimeUnit.MILLISECONDS.toNanos(10));
+                            }
+                            parked = false;
+                        }
+                    }
+                    while(drain() > 0) { }
+                }catch(Throwable t) {
+                    failure = t;
+                    running = false;
+                }
+            }
+        }, "CLSubmissionQueue-"+queue.getDevice().getName());
+        owner.setDaemon(true);
+        owner.start();
+        return this;
+    }
+
+    /**
+     * Stops accepting submissions and stops the owner thread after all pending submissions have been enqueued.
+     */
+    public synchronized void shutdown() throws InterruptedException {
+        closed = true;
+
+        // close the ring, every slot below end was claimed before and will be published
+        long end;
+        while(true) {
+            end = tail.get();
+            if((end & CLOSED) != 0) {
+                end &= ~CLOSED;
+                break;
+            }
+            if(tail.compareAndSet(end, end | CLOSED)) {
+                break;
+            }
+        }
+
+        Thread thread = owner;
+        if(thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
+            thread.join();
+            owner = null;
+            // wait for producers which claimed a slot but did not publish it yet
+            while(failure == null && head < end) {
+                if(drain() == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if no submission is pending.
+     */
+    public boolean isEmpty() {
+        return (tail.get() & ~CLOSED) == drained.get();
+    }
+
+    /**
+     * Returns the approximate number of pending submissions.
+     */
+    public int getPendingCount() {
+        return (int)((tail.get() & ~CLOSED) - drained.get());
+    }
+
+    /**
+     * Returns the total number of submissions enqueued on the command queue.
+     */
+    public long getDrainedCount() {
+        return drained.get();
+    }
+
+    /**
+     * Returns the exception which terminated the owner thread or null.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the first exception thrown by a {@link Submission} or null.
+     */
+    public RuntimeException getSubmissionFailure() {
+        return submissionFailure;
+    }
+
+    /**
+     * Returns the number of submissions which threw an exception.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the capacity of the ring.
+     */
+    public int getCapacity() {
+        return mask+1;
+    }
+
+    public CLCommandQueue getQueue() {
+        return queue;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+" [queue: "+queue+", pending: "+getPendingCount()+"]";
+    }
+
+    /**
+     * A command posted to a {@link CLSubmissionQueue}, enqueued by the owner thread.
+     */
+    public interface Submission {
+
+        /**
+         * Enqueues the command. Called on the owner thread only.
+         */
+        public void submit(CLCommandQueue queue);
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2009 - 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.ant;
+
+import com.jogamp.ant.KernelSignature.Param;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static java.lang.System.*;
+
+/**
+ * Test for the kernel signature parser of the launcher generator.
+ * @author Michael Bien
+ */
+public class KernelSignatureTest {
+
+    @Test
+    public void parseTest() throws IOException {
+
+        out.println(" - - - kernel signature test - - - ");
+
+        List<KernelSignature> kernels = KernelSignature.parse(readSample());
+
+        assertEquals(11, kernels.size());
+
+        // commented kernel ignored, qualifiers and comments stripped
+        assertSignature(kernels.get(0), "qualifiers", "CLMemory<?> a", "float b", "CLMemory<?> c", "CLMemory<?> d");
+
+        KernelSignature local = kernels.get(1);
+        assertSignature(local, "localMemory", "CLMemory<?> a", "int tmpBytes", "int countsBytes");
+        assertFalse(local.params.get(0).local);
+        assertTrue(local.params.get(1).local);
+        assertTrue(local.params.get(2).local);
+
+        assertSignature(kernels.get(2), "images", "CLMemory<?> src", "CLMemory<?> dst");
+        assertSignature(kernels.get(3), "attributes", "CLMemory<?> a", "float bX, float bY, float bZ, float bW");
+        assertSignature(kernels.get(4), "scalars", "byte a", "byte b", "byte c", "short d", "int e",
+                                                   "int f", "byte g", "long h", "long i", "double j");
+        assertSignature(kernels.get(5), "structs", "CLMemory<?> particles", "Buffer p");
+        assertSignature(kernels.get(6), "noArgs");
+
+        // not allowed as kernel arguments
+        assertEquals("sizeType", kernels.get(7).name);
+        assertNull(kernels.get(7).params);
+        assertNotNull(kernels.get(7).error);
+
+        assertEquals("boolType", kernels.get(8).name);
+        assertNull(kernels.get(8).params);
+        assertNotNull(kernels.get(8).error);
+
+        // vectors with CLKernel setters are passed per component
+        KernelSignature vectors = kernels.get(9);
+        assertSignature(vectors, "vectors", "int aX, int aY", "int bX, int bY, int bZ", "double cX, double cY, double cZ, double cW",
+                                            "Buffer d", "Buffer e");
+        assertEquals(3, vectors.params.get(1).components);
+        assertEquals(1, vectors.params.get(3).components);
+
+        // legal, but CLKernel has no sampler setter
+        assertEquals("samplerType", kernels.get(10).name);
+        assertNull(kernels.get(10).params);
+        assertNotNull(kernels.get(10).error);
+    }
+
+    @Test
+    public void attributeTest() {
+        assertEquals("a   b", KernelSignature.stripAttributes("a __attribute__((aligned(16))) b"));
+        assertEquals("a   b   c", KernelSignature.stripAttributes("a __attribute__ ((x(1, (2)))) b __attribute__((y)) c"));
+    }
+
+    private static void assertSignature(KernelSignature kernel, String name, String... params) {
+        assertEquals(name, kernel.name);
+        assertNull(kernel.error, kernel.error);
+        assertEquals(params.length, kernel.params.size());
+        for (int i = 0; i < params.length; i++) {
+            Param param = kernel.params.get(i);
+            assertEquals(params[i], param.declaration());
+        }
+    }
+
+    private String readSample() throws IOException {
+        Reader reader = new InputStreamReader(getClass().getResourceAsStream("launchers.cl"), "UTF-8");
+        try{
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[1024];
+            int n;
+            while((n = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+            return sb.toString();
+        }finally{
+            reader.close();
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+// sample kernels for KernelSignatureTest
+
+/*
+kernel void commented(global float* a) { }
+*/
+
+kernel void qualifiers(__global const float* restrict a, const float b, __constant int* c,
+                       // comment inside the signature
+                       volatile global uint* d /* trailing comment */) {
+}
+
+__kernel __attribute__((reqd_work_group_size(64, 1, 1)))
+void localMemory(global float* a, local float* tmp, __local int* counts) {
+}
+
+kernel void images(read_only image2d_t src, __write_only image3d_t dst) {
+}
+
+kernel void attributes(global float4* a __attribute__((aligned(16))), float4 b) {
+}
+
+kernel void scalars(char a, uchar b, unsigned char c, unsigned short d, unsigned int e,
+                    unsigned f, signed char g, long h, unsigned long i, double j) {
+}
+
+kernel void structs(global struct Particle* particles, struct Particle p) {
+}
+
+kernel void noArgs(void) {
+}
+
+kernel void sizeType(global float* a, size_t n) {
+}
+
+kernel void boolType(bool flag) {
+}
+
+kernel void vectors(int2 a, uint3 b, double4 c, float8 d, char4 e) {
+}
+
+kernel void samplerType(read_only image2d_t src, sampler_t sampler) {
+}
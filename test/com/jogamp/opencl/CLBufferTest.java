@@ -31,6 +31,9 @@ package com.jogamp.opencl;
 import com.jogamp.opencl.CLMemory.Mem;
 import com.jogamp.opencl.CLMemory.Map;
 import com.jogamp.common.nio.Buffers;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
@@ -402,5 +405,176 @@ public class CLBufferTest {
 
     }
 
+    @Test
+    public void dirtyRangesTest() {
+
+        out.println(" - - - dirty ranges test - - - ");
+
+        CLDirtyRanges ranges = new CLDirtyRanges(4);
+        ranges.add(100, 8);
+        ranges.add(0, 4);
+        ranges.add(110, 4);   // merged with [100, 108), gap < 4
+        ranges.add(200, 10);
+        assertEquals(3, ranges.size());
+        assertEquals(0,   ranges.getOffset(0));
+        assertEquals(4,   ranges.getLength(0));
+        assertEquals(100, ranges.getOffset(1));
+        assertEquals(14,  ranges.getLength(1));
+        assertEquals(200, ranges.getOffset(2));
+
+        ranges.add(2, 300);   // swallows everything
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.getOffset(0));
+        assertEquals(302, ranges.getLength(0));
+
+        ranges.clear();
+        assertEquals(0, ranges.size());
+    }
+
+    @Test
+    public void rangedTransferTest() {
+
+        out.println(" - - - ranged transfer test - - - ");
+
+        final int elements = NUM_ELEMENTS;
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLBuffer<IntBuffer> clBufferA = context.createIntBuffer(elements, Mem.READ_WRITE);
+            CLBuffer<IntBuffer> clBufferB = context.createIntBuffer(elements, Mem.READ_WRITE);
+
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+
+            queue.putWriteBuffer(clBufferA, true);
+
+            clBufferA.enableDirtyTracking(64);
+            CLBuffer<IntBuffer>.TrackedView view = clBufferA.getTrackedView();
+            view.putInt(0, 42).putInt(1, 43).putInt(elements-1, 44);
+            clBufferA.getBuffer().put(1000, 45);
+            clBufferA.markDirty(1000, 1);
+
+            assertTrue(clBufferA.isDirty());
+            assertEquals(3, clBufferA.getDirtyRangeCount());
+
+            queue.putSyncBuffer(clBufferA, true);
+            assertFalse(clBufferA.isDirty());
+
+            queue.putCopyBuffer(clBufferA, clBufferB)
+                 .putReadBuffer(clBufferB, 0, 2*SIZEOF_INT, false)
+                 .putReadBuffer(clBufferB, 1000*SIZEOF_INT, SIZEOF_INT, false)
+                 .putReadBuffer(clBufferB, (elements-1)*SIZEOF_INT, SIZEOF_INT, true);
+
+            IntBuffer result = clBufferB.getBuffer();
+            assertEquals(42, result.get(0));
+            assertEquals(43, result.get(1));
+            assertEquals(45, result.get(1000));
+            assertEquals(44, result.get(elements-1));
+
+            // one event covers all dirty ranges
+            view.putInt(0, 52).putInt(elements-1, 54);
+            assertEquals(2, clBufferA.getDirtyRangeCount());
+            CLEventList events = new CLEventList(1);
+            queue.putSyncBuffer(clBufferA, false, null, events);
+            assertEquals(1, events.size());
+            events.waitForEvents();
+            events.release();
+
+            queue.putCopyBuffer(clBufferA, clBufferB).putReadBuffer(clBufferB, true);
+            assertEquals(52, result.get(0));
+            assertEquals(54, result.get(elements-1));
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void stagingPoolTest() {
+
+        out.println(" - - - staging pool test - - - ");
+
+        final int elements = NUM_ELEMENTS;
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLBuffer<FloatBuffer> clBufferA = context.createFloatBuffer(elements, Mem.READ_WRITE);
+            CLBuffer<FloatBuffer> clBufferB = context.createFloatBuffer(elements, Mem.READ_WRITE);
+            fillBuffer(clBufferA.getBuffer(), 12345);
+
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+            CLStagingPool pool = new CLStagingPool(queue, 1024, elements*SIZEOF_FLOAT, 2);
+            queue.setStagingPool(pool);
+
+            for (int i = 0; i < 4; i++) {
+                queue.putWriteBuffer(clBufferA, false)
+                     .putReadBuffer(clBufferB, true);
+                for (int n = 0; n < elements; n++) {
+                    assertEquals(clBufferA.getBuffer().get(n), clBufferB.getBuffer().get(n), 0.0f);
+                }
+                clBufferB.getBuffer().clear();
+            }
+
+            assertTrue(pool.getBufferCount() <= 2);
+            assertTrue(pool.getHitCount() > 0);
+
+            pool.release();
+            assertNull(queue.getStagingPool());
+
+            // size classes above 2^30 do not fit into an int
+            try{
+                new CLStagingPool(queue, 1024, (1 << 30)+1, 2);
+                fail("expected IllegalArgumentException");
+            }catch(IllegalArgumentException expected) { }
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void fileBackedBufferTest() throws IOException {
+
+        out.println(" - - - file backed buffer test - - - ");
+
+        final int windowSize = 4096;
+        final int size = 3*windowSize+100;
+
+        File file = File.createTempFile("jocl", ".bin");
+        file.deleteOnExit();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        CLContext context = CLContext.create();
+
+        try{
+            ByteBuffer data = fillBuffer(newDirectByteBuffer(size), 12345);
+            raf.getChannel().write(data);
+            data.rewind();
+
+            List<CLBuffer<ByteBuffer>> windows = context.createBuffers(raf.getChannel(), windowSize, Mem.READ_ONLY);
+            assertEquals(4, windows.size());
+            assertEquals(100, windows.get(3).getCLSize());
+
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+            CLBuffer<ByteBuffer> result = context.createByteBuffer(windowSize, Mem.WRITE_ONLY);
+
+            for (int i = 0; i < windows.size(); i++) {
+                CLBuffer<ByteBuffer> window = windows.get(i);
+                queue.putCopyBuffer(window, result, 0, 0, window.getCLSize(), null)
+                     .putReadBuffer(result, true);
+                for (int n = 0; n < window.getCLSize(); n++) {
+                    assertEquals(data.get(i*windowSize+n), result.getBuffer().get(n));
+                }
+            }
+
+        }finally{
+            context.release();
+            raf.close();
+        }
+
+    }
 
 }
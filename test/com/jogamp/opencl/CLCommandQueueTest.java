@@ -33,11 +33,17 @@ import org.junit.rules.MethodRule;
 import org.junit.rules.Timeout;
 import java.util.concurrent.CountDownLatch;
 import com.jogamp.opencl.util.MultiQueueBarrier;
+import com.jogamp.opencl.util.CLStreamProcessor;
+import com.jogamp.opencl.util.concurrent.CLSubmissionQueue;
+import com.jogamp.opencl.util.concurrent.CLSubmissionQueue.Submission;
 import com.jogamp.opencl.CLCommandQueue.Mode;
 import com.jogamp.opencl.CLMemory.Mem;
+import com.jogamp.opencl.CLWork.CLWork1D;
 import com.jogamp.opencl.util.CLDeviceFilters;
 import com.jogamp.opencl.util.CLPlatformFilters;
 import com.jogamp.opencl.llb.CL;
+import com.jogamp.opencl.llb.CLEventBinding;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
@@ -50,6 +56,8 @@ import static java.lang.System.*;
 import static com.jogamp.opencl.TestUtils.*;
 import static com.jogamp.opencl.CLEvent.*;
 import static com.jogamp.opencl.CLVersion.*;
+import static com.jogamp.opencl.CLException.*;
+import static com.jogamp.opencl.util.CLPlatformFilters.*;
 import static com.jogamp.common.nio.Buffers.*;
 import static com.jogamp.opencl.CLCommandQueue.Mode.*;
 
@@ -221,6 +229,111 @@ public class CLCommandQueueTest {
         
     }
 
+    @Test
+    public void ringEventListTest() {
+
+        out.println(" - - - ring event list test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLBuffer<ByteBuffer> buffer = context.createByteBuffer(64);
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+
+            CLEventBinding binding = context.getPlatform().getEventBinding();
+            IntBuffer refCount = newDirectIntBuffer(1);
+
+            CLEventList events = CLEventList.createRing(4);
+            assertTrue(events.isRing());
+
+            long[] ids = new long[10];
+            for (int i = 0; i < 10; i++) {
+                queue.putWriteBuffer(buffer, false, events);
+                assertEquals(Math.min(i+1, 4), events.size());
+                ids[i] = events.getEvent(events.size()-1).ID;
+
+                if(i == 3) {
+                    // keep the oldest event alive to observe that the list releases it on wrap-around
+                    checkForError(binding.clRetainEvent(ids[0]), "can not retain event");
+                    checkForError(binding.clGetEventInfo(ids[0], CL.CL_EVENT_REFERENCE_COUNT, SIZEOF_INT, refCount, null), "can not get event info");
+                    assertEquals(2, refCount.get(0));
+                }else if(i == 4) {
+                    checkForError(binding.clGetEventInfo(ids[0], CL.CL_EVENT_REFERENCE_COUNT, SIZEOF_INT, refCount, null), "can not get event info");
+                    assertEquals(1, refCount.get(0));
+                    checkForError(binding.clReleaseEvent(ids[0]), "can not release event");
+                }
+            }
+            queue.finish();
+
+            // oldest first, the slots of the first six events have been reused
+            events.waitForEvents();
+            int index = 0;
+            for (CLEvent event : events) {
+                assertEquals(ids[6+index], event.ID);
+                assertEquals(ids[6+index], events.getEvent(index).ID);
+                assertTrue(event.isComplete());
+                assertEquals(CommandType.WRITE_BUFFER, event.getType());
+                index++;
+            }
+            assertEquals(4, index);
+            assertSame(events.getEvent(3), events.getEvent(3));
+
+            events.release();
+            assertEquals(0, events.size());
+
+        }finally{
+            context.release();
+        }
+    }
+
+    @Test
+    public void eventReactorTest() throws InterruptedException {
+
+        out.println(" - - - event reactor test - - - ");
+
+        CLPlatform platform = CLPlatform.getDefault(version(CL_1_1));
+        if(platform == null) {
+            out.println("aborting test... need OpenCL 1.1 for event callbacks");
+            return;
+        }
+
+        CLContext context = CLContext.create(platform);
+
+        try{
+            CLBuffer<ByteBuffer> buffer = context.createByteBuffer(64);
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+
+            final int commands = 8;
+            final CountDownLatch latch = new CountDownLatch(commands);
+            CLEventListener listener = new CLEventListener() {
+                @Override public void eventStateChanged(CLEvent event, int status) {
+                    assertEquals(ExecutionStatus.COMPLETE.STATUS, status);
+                    latch.countDown();
+                }
+            };
+
+            CLEventReactor reactor = context.getEventReactor();
+            assertSame(reactor, context.getEventReactor());
+
+            CLEventList events = new CLEventList(commands);
+            for (int i = 0; i < commands; i++) {
+                queue.putWriteBuffer(buffer, false, events);
+            }
+            reactor.register(events, listener);
+            queue.finish();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(commands, reactor.getCompletedCount());
+            assertTrue(reactor.getBatchCount() <= commands);
+            assertEquals(0, reactor.getPendingCount());
+
+            events.release();
+
+        }finally{
+            context.release();
+        }
+    }
+
     @Test
     public void profilingEventsTest() throws IOException {
 
@@ -504,4 +617,454 @@ public class CLCommandQueueTest {
         }
 
     }
+
+    @Test
+    public void commandListTest() throws IOException {
+
+        out.println(" - - - command list test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLDevice device = context.getDevices()[0];
+            int groupSize = device.getMaxWorkItemSizes()[0];
+            final int elements = roundUp(groupSize, ONE_MB / SIZEOF_INT);
+
+            CLBuffer<ByteBuffer> bufferA = context.createByteBuffer(elements * SIZEOF_INT, Mem.READ_WRITE);
+            CLBuffer<ByteBuffer> bufferB = context.createByteBuffer(elements * SIZEOF_INT, Mem.READ_WRITE);
+
+            CLProgram program = context.createProgram(getClass().getResourceAsStream("testkernels.cl")).build();
+            CLKernel kernel = program.createCLKernel("add");
+            CLCommandQueue queue = device.createCommandQueue();
+
+            CLCommandList list = new CLCommandList();
+            CLCommandList.MemorySlot buffer = list.createMemorySlot(bufferA);
+            CLCommandList.ValueSlot value = list.createIntSlot();
+
+            list.putWriteBuffer(buffer, false)
+                .putArg(kernel, 0, buffer).putArg(kernel, 1, value).putArg(kernel, 2, elements)
+                .put1DRangeKernel(kernel, 0, elements, groupSize)
+                .putReadBuffer(buffer, true);
+
+            for (int i = 0; i < elements; i++) {
+                bufferA.buffer.putInt(i*SIZEOF_INT, i);
+                bufferB.buffer.putInt(i*SIZEOF_INT, 2*i);
+            }
+
+            value.set(1);
+            queue.putCommandList(list);
+
+            buffer.bind(bufferB);
+            value.set(2);
+            CLEventList events = new CLEventList(1);
+            queue.putCommandList(list, events);
+            assertEquals(1, events.size());
+            events.waitForEvents();
+
+            for (int i = 0; i < elements; i++) {
+                assertEquals(i+1, bufferA.buffer.getInt(i*SIZEOF_INT));
+                assertEquals(2*i+2, bufferB.buffer.getInt(i*SIZEOF_INT));
+            }
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void asyncEnqueueTest() throws Exception {
+
+        out.println(" - - - async enqueue test - - - ");
+
+        CLPlatform platform = CLPlatform.getDefault(version(CL_1_1));
+        if(platform == null) {
+            out.println("aborting asyncEnqueueTest");
+            return;
+        }
+
+        CLContext context = CLContext.create(platform);
+
+        try{
+            CLDevice device = context.getDevices()[0];
+            int groupSize = device.getMaxWorkItemSizes()[0];
+            final int elements = roundUp(groupSize, ONE_MB / SIZEOF_INT);
+
+            CLBuffer<ByteBuffer> clBufferA = context.createByteBuffer(elements * SIZEOF_INT, Mem.READ_WRITE);
+            fillBuffer(clBufferA.buffer, 12345);
+            ByteBuffer expected = newDirectByteBuffer(elements * SIZEOF_INT);
+            for (int i = 0; i < elements; i++) {
+                expected.putInt(clBufferA.buffer.getInt() + 1);
+            }
+            clBufferA.buffer.rewind();
+            expected.rewind();
+
+            CLProgram program = context.createProgram(getClass().getResourceAsStream("testkernels.cl")).build();
+            CLKernel kernel = program.createCLKernel("add").putArg(clBufferA).putArg(1).putArg(elements);
+            CLCommandQueue queue = device.createCommandQueue();
+
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            queue.putWriteBufferAsync(clBufferA);
+            queue.put1DRangeKernelAsync(kernel, 0, elements, groupSize);
+            CLCommandFuture<ByteBuffer> future = queue.putReadBufferAsync(clBufferA);
+
+            // a failing listener does not prevent the notification of the others
+            try{
+                future.addListener(new CLCommandListener<ByteBuffer>() {
+                    @Override public void commandCompleted(CLCommandFuture<ByteBuffer> future) {
+                        throw new IllegalStateException("expected");
+                    }
+                });
+            }catch(IllegalStateException alreadyCompleted) {
+                // listeners added after completion are notified by the caller
+            }
+            future.addListener(new CLCommandListener<ByteBuffer>() {
+                @Override public void commandCompleted(CLCommandFuture<ByteBuffer> future) {
+                    latch.countDown();
+                }
+            });
+
+            ByteBuffer result = future.get(5, TimeUnit.SECONDS);
+            assertTrue(future.isDone());
+            assertFalse(future.isFailed());
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            checkIfEqual(result, expected, elements);
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void workGroupTunerTest() throws IOException {
+
+        out.println(" - - - work group tuner test - - - ");
+
+        CLContext context = CLContext.create();
+
+        File file = File.createTempFile("workgroups", ".properties");
+        file.delete();
+
+        try{
+            CLDevice device = context.getDevices()[0];
+            final int elements = ONE_MB / SIZEOF_INT;
+
+            CLBuffer<ByteBuffer> clBufferA = context.createByteBuffer(elements * SIZEOF_INT, Mem.READ_WRITE);
+
+            CLProgram program = context.createProgram(getClass().getResourceAsStream("testkernels.cl")).build();
+            CLKernel kernel = program.createCLKernel("add").putArg(clBufferA).putArg(1).putArg(elements);
+            CLCommandQueue queue = device.createCommandQueue(PROFILING_MODE);
+
+            CLWork1D work = CLWork.create1D(kernel).setWorkSize(elements);
+
+            CLWorkGroupTuner tuner = new CLWorkGroupTuner(file);
+            assertFalse(tuner.isTuned(work, device));
+
+            long[] local = tuner.tune(queue, work, 3);
+            out.println("tuned local size: "+local[0]);
+            assertTrue(local[0] == 0 || elements % local[0] == 0);
+            assertTrue(tuner.isTuned(work, device));
+            assertArrayEquals(local, tuner.getLocalSize(work, device));
+
+            // tuned sizes are used by putWork
+            queue.setWorkGroupTuner(tuner);
+            assertSame(tuner, queue.getWorkGroupTuner());
+            queue.putWork(work).finish();
+
+            // results are persisted
+            assertTrue(file.isFile());
+            CLWorkGroupTuner loaded = new CLWorkGroupTuner(file);
+            assertEquals(1, loaded.size());
+            assertArrayEquals(local, loaded.getLocalSize(work, device));
+
+            // build options are part of the key
+            CLProgram fast = context.createProgram(getClass().getResourceAsStream("testkernels.cl")).build(CLProgram.CompilerOptions.FAST_RELAXED_MATH);
+            assertEquals(CLProgram.CompilerOptions.FAST_RELAXED_MATH, fast.getBuildOptions());
+            CLKernel fastKernel = fast.createCLKernel("add").putArg(clBufferA).putArg(1).putArg(elements);
+            assertFalse(loaded.isTuned(CLWork.create1D(fastKernel).setWorkSize(elements), device));
+
+            // programs created from binaries have no source and are identified by their binaries
+            CLProgram binary = context.createProgram(program.getBinaries()).build();
+            CLKernel binaryKernel = binary.createCLKernel("add").putArg(clBufferA).putArg(1).putArg(elements);
+            tuner.tune(queue, CLWork.create1D(binaryKernel).setWorkSize(elements), 1);
+            assertTrue(tuner.isTuned(CLWork.create1D(binaryKernel).setWorkSize(elements), device));
+
+            CLProgram other = context.createProgram("kernel void add(global int* a, int value, int n) { }\n").build();
+            CLProgram otherBinary = context.createProgram(other.getBinaries()).build();
+            CLKernel otherKernel = otherBinary.createCLKernel("add").putArg(clBufferA).putArg(1).putArg(elements);
+            assertFalse(tuner.isTuned(CLWork.create1D(otherKernel).setWorkSize(elements), device));
+
+        }finally{
+            file.delete();
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void samplingProfilerTest() throws IOException {
+
+        out.println(" - - - sampling profiler test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLDevice device = context.getDevices()[0];
+            int groupSize = device.getMaxWorkItemSizes()[0];
+            final int elements = roundUp(groupSize, ONE_MB / SIZEOF_INT);
+
+            CLBuffer<ByteBuffer> clBufferA = context.createByteBuffer(elements * SIZEOF_INT, Mem.READ_WRITE);
+
+            CLProgram program = context.createProgram(getClass().getResourceAsStream("testkernels.cl")).build();
+            CLKernel kernel = program.createCLKernel("add").putArg(clBufferA).putArg(1).putArg(elements);
+            CLCommandQueue queue = device.createCommandQueue(PROFILING_MODE);
+
+            CLSamplingProfiler profiler = queue.enableSampling(2, 16);
+            assertSame(profiler, queue.getSamplingProfiler());
+
+            for (int i = 0; i < 10; i++) {
+                queue.putWriteBuffer(clBufferA, false)
+                     .put1DRangeKernel(kernel, 0, elements, groupSize);
+            }
+            queue.finish();
+            profiler.poll();
+
+            assertEquals(10, profiler.getSampleCount() + profiler.getDroppedCount());
+            for (CLSamplingProfiler.Sample sample : profiler.getSamples()) {
+                out.println(sample);
+                assertTrue(sample.end >= sample.start);
+                if(sample.type == CommandType.NDRANGE_KERNEL) {
+                    assertEquals("add", sample.name);
+                }else{
+                    assertEquals(clBufferA.getNIOSize(), sample.bytes);
+                }
+            }
+
+            queue.disableSampling();
+            assertNull(queue.getSamplingProfiler());
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void flushPolicyTest() throws InterruptedException {
+
+        out.println(" - - - flush policy test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLBuffer<ByteBuffer> clBufferA = context.createByteBuffer(ONE_MB, Mem.READ_WRITE);
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+
+            CLFlushPolicy policy = new CLFlushPolicy().setMaxCommands(4).setMaxBytes(3*ONE_MB);
+            queue.setFlushPolicy(policy);
+            assertSame(policy, queue.getFlushPolicy());
+
+            for (int i = 0; i < 6; i++) {
+                queue.putWriteBuffer(clBufferA, false);
+            }
+            // 3 writes trigger the byte limit twice
+            assertEquals(2, policy.getByteFlushes());
+            assertEquals(0, policy.getCommandFlushes());
+
+            queue.finish();
+            for (int i = 0; i < 4; i++) {
+                queue.putBarrier();
+            }
+            assertEquals(1, policy.getCommandFlushes());
+
+            // rect transfers count their region
+            queue.finish();
+            queue.putWriteBufferRect(clBufferA, 0, 0, 0, 0, 1024, 1024, false, null, null);
+            queue.putWriteBufferRect(clBufferA, 0, 0, 0, 0, 1024, 1024, false, null, null);
+            queue.putWriteBufferRect(clBufferA, 0, 0, 0, 0, 1024, 1024, false, null, null);
+            assertEquals(3, policy.getByteFlushes());
+
+            // the time limit flushes pending commands without further enqueues
+            queue.finish();
+            policy.setMaxCommands(0).setMaxBytes(0).setMaxDelay(10, TimeUnit.MILLISECONDS);
+            queue.putBarrier();
+            for (int i = 0; i < 100 && policy.getTimeFlushes() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, policy.getTimeFlushes());
+
+            queue.setFlushPolicy(null);
+            assertNull(queue.getFlushPolicy());
+            queue.finish();
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void submissionQueueTest() throws InterruptedException {
+
+        out.println(" - - - submission queue test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+
+            final int producers = 4;
+            final int submissions = 1000;
+            final int[][] received = new int[producers][submissions];
+            final int[] receivedCount = new int[producers];
+
+            // full ring without owner thread
+            final CLSubmissionQueue submissionQueue = new CLSubmissionQueue(queue, 6, 3);
+            assertEquals(8, submissionQueue.getCapacity());
+
+            final int[] drained = new int[1];
+            Submission counter = new Submission() {
+                @Override public void submit(CLCommandQueue queue) {
+                    drained[0]++;
+                }
+            };
+            for (int i = 0; i < 8; i++) {
+                assertTrue(submissionQueue.offer(counter));
+            }
+            assertFalse(submissionQueue.offer(counter));
+            assertEquals(8, submissionQueue.getPendingCount());
+
+            // a failing submission does not drop the rest of its batch
+            assertEquals(3, submissionQueue.drain());
+            assertTrue(submissionQueue.offer(new Submission() {
+                @Override public void submit(CLCommandQueue queue) {
+                    throw new RuntimeException("expected");
+                }
+            }));
+            assertTrue(submissionQueue.offer(counter));
+            while(submissionQueue.drain() > 0) { }
+            assertTrue(submissionQueue.isEmpty());
+            assertEquals(9, drained[0]);
+            assertEquals(1, submissionQueue.getFailedCount());
+            assertEquals("expected", submissionQueue.getSubmissionFailure().getMessage());
+
+            // multiple producers, ring smaller than the number of submissions
+            submissionQueue.start();
+
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                threads[p] = new Thread() {
+                    @Override public void run() {
+                        for (int i = 0; i < submissions; i++) {
+                            final int value = i;
+                            try{
+                                submissionQueue.submit(new Submission() {
+                                    @Override public void submit(CLCommandQueue queue) {
+                                        received[producer][receivedCount[producer]++] = value;
+                                    }
+                                });
+                            }catch(InterruptedException ex) {
+                                throw new RuntimeException(ex);
+                            }
+                        }
+                    }
+                };
+                threads[p].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // shutdown drains pending submissions
+            submissionQueue.shutdown();
+            assertNull(submissionQueue.getFailure());
+            assertTrue(submissionQueue.isEmpty());
+            assertEquals(10+producers*submissions, submissionQueue.getDrainedCount());
+
+            // per producer ordering
+            for (int p = 0; p < producers; p++) {
+                assertEquals(submissions, receivedCount[p]);
+                for (int i = 0; i < submissions; i++) {
+                    assertEquals(i, received[p][i]);
+                }
+            }
+
+            try{
+                submissionQueue.offer(counter);
+                fail("expected IllegalStateException after shutdown");
+            }catch(IllegalStateException expected) { }
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void streamProcessorTest() throws IOException {
+
+        out.println(" - - - stream processor test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLCommandQueue queue = context.getDevices()[0].createCommandQueue();
+
+            String source = "kernel void sumPairs(global const int* in, global int* out, int n) { \n"
+                          + "    int i = get_global_id(0);                                          \n"
+                          + "    if(i < n) { out[i] = in[2*i] + in[2*i+1]; }                         \n"
+                          + "}";
+            final CLKernel kernel = context.createProgram(source).build().createCLKernel("sumPairs");
+
+            final int tileInts = 256;
+            int ints = 10*tileInts + tileInts/2; // more tiles than slots, partial last tile
+
+            ByteBuffer input = newDirectByteBuffer(ints*SIZEOF_INT);
+            for (int i = 0; i < ints; i++) {
+                input.putInt(i*SIZEOF_INT, i);
+            }
+
+            CLStreamProcessor processor = new CLStreamProcessor(tileInts*SIZEOF_INT, tileInts/2*SIZEOF_INT, 3, queue);
+
+            final IntBuffer result = newDirectIntBuffer(ints/2);
+            final long[] lastTile = {-1};
+
+            long tiles = processor.process(CLStreamProcessor.fromBuffer(input),
+                new CLStreamProcessor.TileKernel() {
+                    @Override public int enqueue(CLCommandQueue computeQueue, CLBuffer<ByteBuffer> tileIn, CLBuffer<ByteBuffer> tileOut,
+                                                 int bytes, long tile, CLEventList condition, CLEventList events) {
+                        int pairs = bytes/SIZEOF_INT/2;
+                        kernel.setArgs(tileIn, tileOut, pairs);
+                        computeQueue.put1DRangeKernel(kernel, 0, pairs, 0, condition, events);
+                        return pairs*SIZEOF_INT;
+                    }
+                },
+                new CLStreamProcessor.TileSink() {
+                    @Override public void consume(ByteBuffer output, long tile, int bytes) {
+                        assertEquals(lastTile[0]+1, tile);
+                        lastTile[0] = tile;
+                        assertEquals(bytes, output.remaining());
+                        result.put(output.asIntBuffer());
+                    }
+                });
+
+            assertEquals(11, tiles);
+            assertEquals(10, lastTile[0]);
+            assertFalse(result.hasRemaining());
+
+            for (int i = 0; i < ints/2; i++) {
+                assertEquals(4*i+1, result.get(i));
+            }
+
+            processor.release();
+
+        }finally{
+            context.release();
+        }
+
+    }
 }
@@ -34,6 +34,7 @@ import com.jogamp.opencl.util.CLBuildConfiguration;
 import com.jogamp.opencl.util.CLProgramConfiguration;
 import com.jogamp.opencl.CLProgram.Status;
 import com.jogamp.opencl.util.CLBuildListener;
+import com.jogamp.opencl.util.CLUtil;
 import com.jogamp.opencl.llb.CL;
 import java.io.File;
 import java.io.FileInputStream;
@@ -45,7 +46,10 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -192,6 +196,109 @@ public class CLProgramTest {
 
     }
 
+    @Test
+    public void programCacheTest() throws IOException {
+
+        out.println(" - - - CLProgramTest; program binary cache test - - - ");
+
+        String source = CLUtil.readStream(getClass().getResourceAsStream("testkernels.cl"), new StringBuilder()).toString();
+        File dir = tmpFolder.newFolder("programcache");
+        CLProgramCache cache = new CLProgramCache(dir, 64*1024*1024);
+
+        CLContext context = CLContext.create();
+        try{
+            CLProgram program = cache.build(context, source, ENABLE_MAD);
+            assertTrue(program.isExecutable());
+            assertEquals(1, cache.getMissCount());
+            assertTrue(cache.getSize() > 0);
+
+            program = cache.build(context, source, ENABLE_MAD);
+            assertTrue(program.isExecutable());
+            assertNotNull(program.createCLKernel("Test"));
+            assertEquals(1, cache.getHitCount());
+
+            // different options, different binaries
+            cache.build(context, source, WARNINGS_ARE_ERRORS);
+            assertEquals(2, cache.getMissCount());
+
+            // corrupt binaries fall back to a source build
+            for (File file : dir.listFiles()) {
+                FileOutputStream fos = new FileOutputStream(file);
+                fos.write(new byte[] {1, 2, 3});
+                fos.close();
+            }
+            program = cache.build(context, source, ENABLE_MAD);
+            assertTrue(program.isExecutable());
+            assertEquals(3, cache.getMissCount());
+
+            cache.clear();
+            assertEquals(0, cache.getSize());
+        }finally{
+            context.release();
+        }
+    }
+
+    @Test
+    public void sharedProgramTest() throws InterruptedException {
+
+        out.println(" - - - CLProgramTest; shared program test - - - ");
+
+        final String source = "kernel void foo(global float* a) { }\n";
+
+        final CLContext context = CLContext.create();
+        try{
+            final CLProgram[] programs = new CLProgram[4];
+            Thread[] threads = new Thread[programs.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    @Override public void run() {
+                        programs[index] = context.getSharedProgram(source, ENABLE_MAD);
+                    }
+                };
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // line endings and whitespace between options are normalized
+            CLProgram program = context.getSharedProgram(source.replace("\n", "\r\n"), "  "+ENABLE_MAD+" ");
+            for (CLProgram p : programs) {
+                assertSame(program, p);
+            }
+            assertTrue(program.isExecutable());
+            assertEquals(1, context.getPrograms().size());
+
+            // shared programs can't be rebuilt, it would release the kernels of the other owners
+            try{
+                program.build();
+                fail("expected IllegalStateException");
+            }catch(IllegalStateException expected) { }
+
+            CLProgram other = context.getSharedProgram(source, WARNINGS_ARE_ERRORS);
+            assertNotSame(program, other);
+
+            // but not trailing whitespace or whitespace inside quotes
+            assertNotSame(program, context.getSharedProgram(source.replace("\n", " \n"), ENABLE_MAD));
+            CLProgram quoted = context.getSharedProgram(source, "-D NAME=\"a b\"");
+            assertNotSame(quoted, context.getSharedProgram(source, "-D NAME=\"a  b\""));
+            assertSame(quoted, context.getSharedProgram(source, " -D  NAME=\"a b\" "));
+
+            for (CLProgram p : programs) {
+                p.release();
+                assertFalse(program.isReleased());
+            }
+            program.release();
+            assertTrue(program.isReleased());
+
+            // released programs are not shared anymore
+            assertNotSame(program, context.getSharedProgram(source, ENABLE_MAD));
+        }finally{
+            context.release();
+        }
+    }
+
     @Test
     public void builderTest() throws IOException, ClassNotFoundException, InterruptedException {
         out.println(" - - - CLProgramTest; program builder test - - - ");
@@ -322,6 +429,152 @@ public class CLProgramTest {
 
     }
 
+    @Test
+    public void kernelArgCacheTest() {
+
+        String source = "kernel void foo(global float* a, float b, int c, local float* d) { }\n";
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLProgram program = context.createProgram(source).build();
+            CLBuffer<?> buffer = context.createBuffer(64);
+
+            CLKernel kernel = program.createCLKernel("foo").setArgCacheEnabled(true);
+            assertTrue(kernel.isArgCacheEnabled());
+
+            kernel.putArg(buffer).putArg(1.0f).putArg(2).putArgSize(16).rewind();
+            assertEquals(0, kernel.getArgCacheHitCount());
+            assertEquals(4, kernel.getArgCacheMissCount());
+
+            kernel.putArg(buffer).putArg(1.0f).putArg(3).putArgSize(16).rewind();
+            assertEquals(3, kernel.getArgCacheHitCount());
+            assertEquals(5, kernel.getArgCacheMissCount());
+
+            kernel.invalidateArgCache();
+            kernel.setArg(1, 1.0f);
+            assertEquals(6, kernel.getArgCacheMissCount());
+
+            kernel.setArgCacheEnabled(false);
+            assertFalse(kernel.isArgCacheEnabled());
+
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void kernelPoolTest() throws InterruptedException {
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLProgram program = context.createProgram("kernel void foo(global float* a) { }\n").build();
+            CLKernelPool pool = program.createKernelPool("foo", 2);
+
+            CLKernel a = pool.checkout();
+            CLKernel b = pool.checkout();
+            assertNotSame(a, b);
+            assertEquals(2, pool.getSize());
+            assertNull(pool.tryCheckout());
+
+            pool.checkin(a);
+            assertEquals(1, pool.getIdleCount());
+            assertSame(a, pool.tryCheckout());
+
+            pool.checkin(a);
+            pool.checkin(b);
+            assertEquals(2, pool.getSize());
+            assertEquals(2, pool.getIdleCount());
+
+            program.release();
+            assertTrue(pool.isReleased());
+            assertTrue(a.isReleased());
+            assertTrue(b.isReleased());
+        }finally{
+            context.release();
+        }
+
+    }
+
+    @Test
+    public void kernelPoolConcurrencyTest() throws InterruptedException {
+
+        out.println(" - - - CLProgramTest; concurrent kernel pool test - - - ");
+
+        CLContext context = CLContext.create();
+
+        try{
+            CLProgram program = context.createProgram("kernel void foo(global float* a) { }\n").build();
+            final CLKernelPool pool = program.createKernelPool("foo", 3);
+
+            final ConcurrentHashMap<CLKernel, Thread> used = new ConcurrentHashMap<CLKernel, Thread>();
+            final AtomicInteger inUse = new AtomicInteger();
+            final AtomicInteger maxInUse = new AtomicInteger();
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+            Thread[] threads = new Thread[8];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread() {
+                    @Override public void run() {
+                        try{
+                            for (int n = 0; n < 500; n++) {
+                                CLKernel kernel = pool.checkout();
+                                try{
+                                    int current = inUse.incrementAndGet();
+                                    int max;
+                                    while(current > (max = maxInUse.get()) && !maxInUse.compareAndSet(max, current)) { }
+
+                                    if(used.putIfAbsent(kernel, Thread.currentThread()) != null) {
+                                        throw new AssertionError(kernel+" was checked out twice");
+                                    }
+                                    Thread.yield();
+                                    used.remove(kernel);
+                                }finally{
+                                    inUse.decrementAndGet();
+                                    pool.checkin(kernel);
+                                }
+                            }
+                        }catch(Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            if(failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            assertTrue(maxInUse.get() <= pool.getMaxSize());
+            assertTrue(pool.getSize() <= pool.getMaxSize());
+            assertEquals(pool.getSize(), pool.getIdleCount());
+
+            // waiting checkouts are interruptible
+            CLKernel[] kernels = new CLKernel[pool.getMaxSize()];
+            for (int i = 0; i < kernels.length; i++) {
+                kernels[i] = pool.checkout();
+            }
+            Thread.currentThread().interrupt();
+            try{
+                pool.checkout();
+                fail("expected InterruptedException");
+            }catch(InterruptedException expected) {
+                assertFalse(Thread.currentThread().isInterrupted());
+            }
+            for (CLKernel kernel : kernels) {
+                pool.checkin(kernel);
+            }
+        }finally{
+            context.release();
+        }
+
+    }
+
     @Test
     public void kernelVectorArgsTest() {
 
@@ -42,11 +42,16 @@ import com.jogamp.opencl.CLDevice.LocalMemType;
 import com.jogamp.opencl.CLDevice.Type;
 import com.jogamp.opencl.CLDevice.Capabilities;
 import com.jogamp.opencl.llb.CL;
+import com.jogamp.opencl.util.CLDeviceRanking;
+import com.jogamp.opencl.util.CLMultiContext;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -221,6 +226,92 @@ public class HighLevelBindingTest {
         }
     }
 
+    @Test
+    public void deviceSnapshotTest() {
+
+        for (CLPlatform platform : CLPlatform.listCLPlatforms()) {
+            for (CLDevice device : platform.listCLDevices()) {
+
+                CLDeviceSnapshot snapshot = device.snapshot();
+                assertSame(snapshot, device.snapshot());
+                assertSame(device, snapshot.getDevice());
+
+                assertEquals(device.getName(), snapshot.getName());
+                assertEquals(device.getType(), snapshot.getType());
+                assertEquals(device.getMaxComputeUnits(), snapshot.getMaxComputeUnits());
+                assertEquals(device.getMaxWorkGroupSize(), snapshot.getMaxWorkGroupSize());
+                assertEquals(device.getExtensions(), snapshot.getExtensions());
+                assertArrayEquals(device.getMaxWorkItemSizes(), snapshot.getMaxWorkItemSizes());
+            }
+        }
+    }
+
+    @Test
+    public void topologyTest() throws IOException {
+
+        CLTopology parallel = CLTopology.discover();
+        CLTopology sequential = CLTopology.discover(1);
+
+        assertEquals(CLPlatform.listCLPlatforms().length, parallel.getPlatforms().length);
+        assertEquals(sequential.getDevices().length, parallel.getDevices().length);
+
+        for (CLPlatform platform : parallel.getPlatforms()) {
+            assertEquals(platform.listCLDevices().length, parallel.getDevices(platform).length);
+        }
+
+        File file = File.createTempFile("topology", ".properties");
+        try{
+            assertFalse(parallel.matches(file));
+            parallel.store(file);
+            assertTrue(parallel.matches(file));
+            assertTrue(sequential.matches(file));
+        }finally{
+            file.delete();
+        }
+    }
+
+    @Test
+    public void deviceRankingTest() throws IOException {
+
+        File file = File.createTempFile("devices", ".properties");
+        file.delete();
+
+        try{
+            CLDeviceRanking ranking = new CLDeviceRanking(file);
+
+            List<CLDevice> devices = new ArrayList<CLDevice>();
+            for (CLPlatform platform : CLPlatform.listCLPlatforms()) {
+                devices.addAll(Arrays.asList(platform.listCLDevices()));
+            }
+
+            for (CLDevice device : devices) {
+                CLDeviceRanking.Score score = ranking.score(device);
+                out.println(device.getName()+": "+score);
+                assertTrue(score.getScore() > 0);
+                assertSame(score, ranking.score(device));
+            }
+            assertTrue(file.isFile());
+
+            // scores are loaded from disk
+            CLDeviceRanking loaded = new CLDeviceRanking(file);
+            CLDevice best = ranking.best(devices.toArray(new CLDevice[devices.size()]));
+            assertEquals(ranking.score(best).getScore(), loaded.score(best).getScore(), 0);
+
+            assertTrue(ranking.top(1).accept(best));
+            assertTrue(ranking.atLeast(1).accept(best));
+
+            CLMultiContext mc = CLMultiContext.create(devices, ranking.order());
+            try{
+                CLDevice first = mc.getContexts().get(0).getDevices()[0];
+                assertEquals(ranking.score(best).getScore(), ranking.score(first).getScore(), 0);
+            }finally{
+                mc.release();
+            }
+        }finally{
+            file.delete();
+        }
+    }
+
     @Test
     public void subDeviceTest() {
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2011, Michael Bien
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+/*
+
+package com.jogamp.opencl.util;
+
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.util.CLCommandGraph.Command;
+import com.jogamp.opencl.util.CLCommandGraph.Node;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Michael Bien
+ */
+public class CLCommandGraphTest {
+
+    private static final Command NOOP = new Command() {
+        public void enqueue(CLCommandQueue queue, CLEventList condition, CLEventList events) { }
+    };
+
+    @Test
+    public void reductionTest() {
+
+        CLCommandGraph graph = new CLCommandGraph();
+
+        Node a = graph.putCommand(NOOP);
+        Node b = graph.putCommand(NOOP).after(a);
+        Node c = graph.putCommand(NOOP).after(a, b);
+        Node d = graph.putCommand(NOOP).after(a, b, c);
+        Node e = graph.putCommand(NOOP).after(a);
+
+        graph.compile();
+
+        assertEquals(5, graph.size());
+        assertEquals(0, graph.getMinimalDependencyCount(a));
+        assertEquals(1, graph.getMinimalDependencyCount(b));
+        assertEquals(1, graph.getMinimalDependencyCount(c));
+        assertEquals(1, graph.getMinimalDependencyCount(d));
+        assertEquals(1, graph.getMinimalDependencyCount(e));
+
+        e.after(d);
+        assertEquals(1, graph.getMinimalDependencyCount(e));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void cycleTest() {
+
+        CLCommandGraph graph = new CLCommandGraph();
+
+        Node a = graph.putCommand(NOOP);
+        Node b = graph.putCommand(NOOP).after(a);
+        a.after(b);
+
+        graph.compile();
+    }
+
+}
@@ -36,6 +36,7 @@ import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLKernel;
 import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
 import com.jogamp.opencl.util.concurrent.CLQueueContext.CLSingleProgramQueueContext;
 import java.nio.IntBuffer;
 import java.util.concurrent.ExecutionException;
@@ -85,6 +86,28 @@ public class CLMultiContextTest {
 
     }
 
+    @Test
+    public void concurrentBuildTest() {
+
+        CLMultiContext mc = CLMultiContext.create(CLPlatform.listCLPlatforms());
+        CLProgram.setBuildConcurrency(CLProgram.BuildScope.DEVICE, 1);
+
+        try{
+            List<CLProgram> programs = mc.buildPrograms(programSource, null);
+            assertEquals(mc.getContexts().size(), programs.size());
+
+            for (int i = 0; i < programs.size(); i++) {
+                CLProgram program = programs.get(i);
+                assertTrue(program.isExecutable());
+                assertEquals(mc.getContexts().get(i), program.getContext());
+            }
+        }finally{
+            CLProgram.setBuildConcurrency(CLProgram.BuildScope.GLOBAL, 1);
+            mc.release();
+        }
+
+    }
+
     private final static String programSource =
           "kernel void compute(global int* array, int numElements) { \n"
         + "    int index = get_global_id(0);                         \n"